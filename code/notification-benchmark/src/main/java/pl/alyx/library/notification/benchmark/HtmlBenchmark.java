@@ -0,0 +1,42 @@
+package pl.alyx.library.notification.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.alyx.library.notification.utils.HtmlUtils;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HtmlBenchmark {
+
+    private final String text = Notifications.text();
+    private final String html = Notifications.html();
+
+    @Benchmark
+    public String makeHtml() {
+        return HtmlUtils.makeHtml(text);
+    }
+
+    @Benchmark
+    public String makeTextFromHtml() {
+        return HtmlUtils.makeText(html);
+    }
+
+    @Benchmark
+    public String makeTextFromText() {
+        return HtmlUtils.makeText(text);
+    }
+
+}
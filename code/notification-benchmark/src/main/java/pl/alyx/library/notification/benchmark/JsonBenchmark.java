@@ -0,0 +1,49 @@
+package pl.alyx.library.notification.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.alyx.library.notification.json.JsonUtils;
+import pl.alyx.library.notification.model.Notification;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+    @Param({"0", "16384"})
+    public int attachmentSize;
+
+    private Notification notification;
+    private String json;
+
+    @Setup
+    public void setup() {
+        notification = Notifications.create(attachmentSize);
+        json = JsonUtils.toJson(notification);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return JsonUtils.toJson(notification);
+    }
+
+    @Benchmark
+    public Notification fromJson() {
+        return JsonUtils.fromJson(json, Notification.class);
+    }
+
+}
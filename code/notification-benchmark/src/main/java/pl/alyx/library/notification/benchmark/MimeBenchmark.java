@@ -0,0 +1,66 @@
+package pl.alyx.library.notification.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.alyx.library.notification.exception.SendException;
+import pl.alyx.library.notification.model.Notification;
+import pl.alyx.library.notification.sender.config.EmailSenderConfig;
+import pl.alyx.library.notification.sender.config.MailServerConfig;
+import pl.alyx.library.notification.sender.config.MailServerSecurity;
+import pl.alyx.library.notification.sender.impl.EmailSender;
+import pl.alyx.library.notification.sender.impl.PreparedEmail;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MimeBenchmark {
+
+    @Param({"0", "16384", "1048576"})
+    public int attachmentSize;
+
+    @Param({"TEXT", "HTML"})
+    public String format;
+
+    private EmailSender sender;
+    private Notification notification;
+
+    @Setup
+    public void setup() {
+        // the message is only assembled and written, no connection is opened
+        sender = new EmailSender(new EmailSenderConfig.Builder()
+                .server(new MailServerConfig.Builder()
+                        .host("localhost")
+                        .security(MailServerSecurity.NONE)
+                        .build())
+                .fromMail("robot@example.com")
+                .fromName("Robot")
+                .build());
+        notification = Notifications.create(attachmentSize, format);
+    }
+
+    @TearDown
+    public void tearDown() {
+        sender.close();
+    }
+
+    @Benchmark
+    public PreparedEmail prepare() throws SendException {
+        return sender.prepare(notification);
+    }
+
+}
@@ -0,0 +1,52 @@
+package pl.alyx.library.notification.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.alyx.library.notification.model.Notification;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NotificationBenchmark {
+
+    private final Instant time = Instant.now();
+    private final List<String> cc = Arrays.asList("copy1@example.com", "copy2@example.com");
+
+    @Benchmark
+    public Notification build() {
+        return new Notification.Builder()
+                .id("4f1c6d3e-8a5b-4c2d-9e7f-0a1b2c3d4e5f")
+                .type("email")
+                .time(time)
+                .recipient("user@example.com")
+                .cc(cc)
+                .subject("Benchmark")
+                .message("Hello")
+                .format("TEXT")
+                .build();
+    }
+
+    @Benchmark
+    public Notification buildMinimal() {
+        return new Notification.Builder()
+                .recipient("user@example.com")
+                .message("Hello")
+                .build();
+    }
+
+}
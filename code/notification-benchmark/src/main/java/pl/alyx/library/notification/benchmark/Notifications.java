@@ -0,0 +1,57 @@
+package pl.alyx.library.notification.benchmark;
+
+import pl.alyx.library.notification.model.Attachment;
+import pl.alyx.library.notification.model.Notification;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+final class Notifications {
+
+    private Notifications() {
+    }
+
+    static Notification create(int attachmentSize) {
+        return create(attachmentSize, "TEXT");
+    }
+
+    static Notification create(int attachmentSize, String format) {
+        Notification.Builder builder = new Notification.Builder()
+                .id("4f1c6d3e-8a5b-4c2d-9e7f-0a1b2c3d4e5f")
+                .type("email")
+                .time(Instant.parse("2024-01-01T12:00:00Z"))
+                .recipient("user@example.com")
+                .cc(Arrays.asList("copy1@example.com", "copy2@example.com"))
+                .subject("Monthly report")
+                .message("HTML".equals(format) ? html() : text())
+                .format(format);
+        if (attachmentSize > 0) {
+            byte[] data = new byte[attachmentSize];
+            new Random(42).nextBytes(data);
+            builder.attachments(Collections.singletonList(new Attachment.Builder()
+                    .file("report.bin")
+                    .data(data)
+                    .build()));
+        }
+        return builder.build();
+    }
+
+    static String text() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            text.append("Line ").append(i).append(" of the report, with totals & notes.\n");
+        }
+        return text.toString();
+    }
+
+    static String html() {
+        StringBuilder html = new StringBuilder("<html><body><h1>Monthly report</h1><ul>");
+        for (int i = 0; i < 20; i++) {
+            html.append("<li>Line ").append(i).append(" of the report, with <b>totals</b> &amp; notes.</li>");
+        }
+        return html.append("</ul></body></html>").toString();
+    }
+
+}
@@ -0,0 +1,9 @@
+package pl.alyx.library.notification.exception;
+
+public class CircuitOpenException extends RetryableSendException {
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,49 @@
+package pl.alyx.library.notification.exception;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class PartialSendException extends RetryableSendException {
+
+    private final List<String> sent;
+    private final List<String> unsent;
+    private final List<String> invalid;
+    private final boolean retryable;
+
+    public PartialSendException(String message, Throwable cause, List<String> sent, List<String> unsent, List<String> invalid) {
+        this(message, cause, sent, unsent, invalid, true);
+    }
+
+    public PartialSendException(String message, Throwable cause, List<String> sent, List<String> unsent, List<String> invalid, boolean retryable) {
+        super(message, cause);
+        this.sent = copy(sent);
+        this.unsent = copy(unsent);
+        this.invalid = copy(invalid);
+        this.retryable = retryable;
+    }
+
+    public List<String> getSent() {
+        return sent;
+    }
+
+    public List<String> getUnsent() {
+        return unsent;
+    }
+
+    public List<String> getInvalid() {
+        return invalid;
+    }
+
+    // only invalid recipients left, or a failure that repeats on every attempt,
+    // means a retry cannot reach anyone
+    @Override
+    public boolean isRetryable() {
+        return retryable && !unsent.isEmpty();
+    }
+
+    private static List<String> copy(List<String> list) {
+        return list == null || list.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(list));
+    }
+
+}
@@ -0,0 +1,36 @@
+package pl.alyx.library.notification.exception;
+
+import java.io.IOException;
+
+public class SmtpException extends IOException {
+
+    private final int code;
+    private final boolean permanent;
+
+    public SmtpException(int code, String message) {
+        super(message);
+        this.code = code;
+        this.permanent = code >= 500;
+    }
+
+    public SmtpException(String message, boolean permanent) {
+        super(message);
+        this.code = 0;
+        this.permanent = permanent;
+    }
+
+    public SmtpException(String message, Throwable cause) {
+        super(message, cause);
+        this.code = 0;
+        this.permanent = false;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public boolean isPermanent() {
+        return permanent;
+    }
+
+}
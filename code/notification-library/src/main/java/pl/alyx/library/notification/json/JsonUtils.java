@@ -2,6 +2,7 @@ package pl.alyx.library.notification.json;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonSyntaxException;
 import pl.alyx.library.notification.exception.JsonParseException;
 import pl.alyx.library.notification.json.serializer.AttachmentSerializer;
@@ -10,7 +11,19 @@ import pl.alyx.library.notification.json.serializer.NotificationSerializer;
 import pl.alyx.library.notification.model.Attachment;
 import pl.alyx.library.notification.model.Notification;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.Iterator;
+import java.util.stream.Stream;
 
 public class JsonUtils {
 
@@ -30,6 +43,18 @@ public class JsonUtils {
         }
     }
 
+    public static <T> T fromJson(Reader reader, Class<T> type) {
+        try {
+            return GSON_COMPACT.fromJson(reader, type);
+        } catch (JsonSyntaxException | JsonIOException e) {
+            throw new JsonParseException("Failed to parse JSON", e);
+        }
+    }
+
+    public static <T> T fromJson(InputStream in, Class<T> type) {
+        return fromJson(new InputStreamReader(in, StandardCharsets.UTF_8), type);
+    }
+
     public static String toJson(Object obj) {
         return GSON_COMPACT.toJson(obj);
     }
@@ -38,4 +63,52 @@ public class JsonUtils {
         return pretty ? GSON_PRETTY.toJson(obj) : GSON_COMPACT.toJson(obj);
     }
 
+    public static void toJson(Object obj, Writer writer) {
+        toJson(obj, writer, false);
+    }
+
+    public static void toJson(Object obj, Writer writer, boolean pretty) {
+        try {
+            (pretty ? GSON_PRETTY : GSON_COMPACT).toJson(obj, writer);
+        } catch (JsonIOException e) {
+            if (e.getCause() instanceof IOException) {
+                throw new UncheckedIOException((IOException) e.getCause());
+            }
+            throw e;
+        }
+    }
+
+    public static void toJson(Object obj, OutputStream out) {
+        toJson(obj, out, false);
+    }
+
+    public static void toJson(Object obj, OutputStream out, boolean pretty) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        toJson(obj, writer, pretty);
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Stream<Notification> fromNdjson(InputStream in) {
+        return new NdjsonReader<>(in, Notification.class).stream();
+    }
+
+    public static Stream<Notification> fromNdjson(InputStream in, NdjsonReader.ErrorHandler errorHandler) {
+        return new NdjsonReader<>(in, Notification.class, errorHandler).stream();
+    }
+
+    public static long toNdjson(Iterator<?> records, OutputStream out) {
+        NdjsonWriter writer = new NdjsonWriter(out);
+        try {
+            long count = writer.writeAll(records);
+            writer.flush();
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
 }
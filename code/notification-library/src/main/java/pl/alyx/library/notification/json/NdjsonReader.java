@@ -0,0 +1,128 @@
+package pl.alyx.library.notification.json;
+
+import pl.alyx.library.notification.exception.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class NdjsonReader<T> implements Iterator<T>, Closeable {
+
+    private final BufferedReader reader;
+    private final Class<T> type;
+    private final ErrorHandler errorHandler;
+    private long line;
+    private long errors;
+    private T next;
+    private boolean finished;
+
+    public NdjsonReader(InputStream in, Class<T> type) {
+        this(new InputStreamReader(in, StandardCharsets.UTF_8), type, null);
+    }
+
+    public NdjsonReader(InputStream in, Class<T> type, ErrorHandler errorHandler) {
+        this(new InputStreamReader(in, StandardCharsets.UTF_8), type, errorHandler);
+    }
+
+    public NdjsonReader(Reader reader, Class<T> type, ErrorHandler errorHandler) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader, 64 * 1024);
+        this.type = type;
+        this.errorHandler = errorHandler;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        try {
+            String content;
+            while ((content = reader.readLine()) != null) {
+                line++;
+                if (content.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    next = JsonUtils.fromJson(content, type);
+                } catch (JsonParseException e) {
+                    error(content, e);
+                    continue;
+                } catch (RuntimeException e) {
+                    error(content, new JsonParseException("Invalid record: " + e.getMessage(), e));
+                    continue;
+                }
+                if (next != null) {
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        finished = true;
+        return false;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T result = next;
+        next = null;
+        return result;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public long getErrorCount() {
+        return errors;
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        next = null;
+        reader.close();
+    }
+
+    private void error(String content, JsonParseException exception) {
+        errors++;
+        if (errorHandler != null) {
+            errorHandler.onError(line, content, exception);
+        }
+    }
+
+    public interface ErrorHandler {
+
+        void onError(long line, String content, JsonParseException exception);
+
+    }
+
+}
@@ -0,0 +1,61 @@
+package pl.alyx.library.notification.json;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+public class NdjsonWriter implements Closeable, Flushable {
+
+    private final Writer writer;
+    private long count;
+
+    public NdjsonWriter(OutputStream out) {
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    public NdjsonWriter(Writer writer) {
+        this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer, 64 * 1024);
+    }
+
+    public void write(Object record) throws IOException {
+        // compact JSON escapes line breaks inside strings, so one record is one line
+        try {
+            JsonUtils.toJson(record, writer);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.write('\n');
+        count++;
+    }
+
+    public long writeAll(Iterator<?> records) throws IOException {
+        long written = 0;
+        while (records.hasNext()) {
+            write(records.next());
+            written++;
+        }
+        return written;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+}
@@ -1,54 +1,143 @@
 package pl.alyx.library.notification.json.serializer;
 
-import com.google.gson.*;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import pl.alyx.library.notification.model.Attachment;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 
-public class AttachmentSerializer implements JsonSerializer<Attachment>, JsonDeserializer<Attachment> {
+public class AttachmentSerializer extends TypeAdapter<Attachment> {
+
+    // multiple of 3, so every chunk is a complete base64 string without padding in the middle
+    private static final int CHUNK_SIZE = 48 * 1024;
 
     @Override
-    public JsonElement serialize(Attachment attachment, Type typeOfSrc, JsonSerializationContext context) {
-        JsonObject jsonObject = new JsonObject();
+    public void write(JsonWriter out, Attachment attachment) throws IOException {
+        if (attachment == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
 
         if (attachment.getFile() != null) {
-            jsonObject.addProperty("file", attachment.getFile());
+            out.name("file").value(attachment.getFile());
         }
 
         if (attachment.getMime() != null) {
-            jsonObject.addProperty("mime", attachment.getMime());
+            out.name("mime").value(attachment.getMime());
         }
 
-        if (attachment.getData() != null) {
-            String base64Data = Base64.getEncoder().encodeToString(attachment.getData());
-            jsonObject.addProperty("data", base64Data);
+        if (attachment.hasData()) {
+            out.name("data");
+            writeData(out, attachment);
         }
 
-        return jsonObject;
+        out.endObject();
     }
 
     @Override
-    public Attachment deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-        JsonObject jsonObject = json.getAsJsonObject();
+    public Attachment read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
 
         Attachment.Builder builder = new Attachment.Builder();
 
-        if (jsonObject.has("file") && !jsonObject.get("file").isJsonNull()) {
-            builder.file(jsonObject.get("file").getAsString());
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "file":
+                    builder.file(in.nextString());
+                    break;
+                case "mime":
+                    builder.mime(in.nextString());
+                    break;
+                case "data":
+                    readData(in, builder);
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
         }
+        in.endObject();
 
-        if (jsonObject.has("mime") && !jsonObject.get("mime").isJsonNull()) {
-            builder.mime(jsonObject.get("mime").getAsString());
+        return builder.build();
+    }
+
+    private static void writeData(JsonWriter out, Attachment attachment) throws IOException {
+        Base64.Encoder encoder = Base64.getEncoder();
+        byte[] chunk = new byte[CHUNK_SIZE];
+        try (InputStream in = attachment.getDataSource().getInputStream()) {
+            int length = fill(in, chunk);
+            if (length < CHUNK_SIZE) {
+                // small content keeps the plain string form
+                out.value(encoder.encodeToString(length == chunk.length ? chunk : copy(chunk, length)));
+                return;
+            }
+            out.beginArray();
+            while (length > 0) {
+                out.value(encoder.encodeToString(length == chunk.length ? chunk : copy(chunk, length)));
+                length = fill(in, chunk);
+            }
+            out.endArray();
         }
+    }
 
-        if (jsonObject.has("data") && !jsonObject.get("data").isJsonNull()) {
-            String base64Data = jsonObject.get("data").getAsString();
-            byte[] data = Base64.getDecoder().decode(base64Data);
-            builder.data(data);
+    private static void readData(JsonReader in, Attachment.Builder builder) throws IOException {
+        Base64.Decoder decoder = Base64.getDecoder();
+        if (in.peek() == JsonToken.STRING) {
+            builder.data(decoder.decode(in.nextString()));
+            return;
         }
+        // chunks are joined once at the exact size instead of regrowing one buffer
+        List<byte[]> chunks = new ArrayList<>();
+        int size = 0;
+        in.beginArray();
+        while (in.hasNext()) {
+            byte[] chunk = decoder.decode(in.nextString());
+            if (size + chunk.length < 0) {
+                throw new IOException("Attachment data is too large");
+            }
+            chunks.add(chunk);
+            size += chunk.length;
+        }
+        in.endArray();
+        byte[] data = new byte[size];
+        int position = 0;
+        for (byte[] chunk : chunks) {
+            System.arraycopy(chunk, 0, data, position, chunk.length);
+            position += chunk.length;
+        }
+        builder.data(data);
+    }
 
-        return builder.build();
+    private static int fill(InputStream in, byte[] buffer) throws IOException {
+        int length = 0;
+        int count;
+        while (length < buffer.length && (count = in.read(buffer, length, buffer.length - length)) > 0) {
+            length += count;
+        }
+        return length;
+    }
+
+    private static byte[] copy(byte[] buffer, int length) {
+        byte[] result = new byte[length];
+        System.arraycopy(buffer, 0, result, 0, length);
+        return result;
     }
 
-}
\ No newline at end of file
+}
@@ -1,24 +1,36 @@
 package pl.alyx.library.notification.json.serializer;
 
-import com.google.gson.*;
-import java.lang.reflect.Type;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 
-public class InstantSerializer implements JsonSerializer<Instant>, JsonDeserializer<Instant> {
+public class InstantSerializer extends TypeAdapter<Instant> {
 
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS")
             .withZone(ZoneId.systemDefault());
 
     @Override
-    public JsonElement serialize(Instant instant, Type type, JsonSerializationContext context) {
-        return new JsonPrimitive(FORMATTER.format(instant));
+    public void write(JsonWriter out, Instant instant) throws IOException {
+        if (instant == null) {
+            out.nullValue();
+            return;
+        }
+        out.value(FORMATTER.format(instant));
     }
 
     @Override
-    public Instant deserialize(JsonElement json, Type type, JsonDeserializationContext context) throws JsonParseException {
-        return Instant.from(FORMATTER.parse(json.getAsString()));
+    public Instant read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return Instant.from(FORMATTER.parse(in.nextString()));
     }
 
-}
\ No newline at end of file
+}
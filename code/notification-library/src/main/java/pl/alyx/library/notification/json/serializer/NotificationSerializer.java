@@ -1,141 +1,162 @@
 package pl.alyx.library.notification.json.serializer;
 
-import com.google.gson.*;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import pl.alyx.library.notification.model.Attachment;
 import pl.alyx.library.notification.model.Notification;
 
-import java.lang.reflect.Type;
-import java.time.Instant;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-public class NotificationSerializer implements JsonSerializer<Notification>, JsonDeserializer<Notification> {
+public class NotificationSerializer extends TypeAdapter<Notification> {
+
+    private final InstantSerializer instantSerializer = new InstantSerializer();
+    private final AttachmentSerializer attachmentSerializer = new AttachmentSerializer();
 
     @Override
-    public JsonElement serialize(Notification notification, Type typeOfSrc, JsonSerializationContext context) {
-        JsonObject jsonObject = new JsonObject();
+    public void write(JsonWriter out, Notification notification) throws IOException {
+        if (notification == null) {
+            out.nullValue();
+            return;
+        }
 
-        jsonObject.addProperty("id", notification.getId());
+        out.beginObject();
+
+        out.name("id").value(notification.getId());
 
         if (notification.getTime() != null) {
-            jsonObject.add("time", context.serialize(notification.getTime()));
+            out.name("time");
+            instantSerializer.write(out, notification.getTime());
         }
 
-        if (notification.getType() != null) {
-            jsonObject.addProperty("type", notification.getType());
+        if (notification.getTypeName() != null) {
+            out.name("type").value(notification.getTypeName());
         }
 
         if (notification.getRecipient() != null) {
-            jsonObject.addProperty("recipient", notification.getRecipient());
+            out.name("recipient").value(notification.getRecipient());
         }
 
         if (notification.getSubject() != null) {
-            jsonObject.addProperty("subject", notification.getSubject());
+            out.name("subject").value(notification.getSubject());
         }
 
-        jsonObject.addProperty("message", notification.getMessage());
+        out.name("message").value(notification.getMessage());
 
         if (notification.getAttachments() != null) {
-            JsonArray attachmentsArray = new JsonArray();
+            out.name("attachments").beginArray();
             for (Attachment attachment : notification.getAttachments()) {
-                attachmentsArray.add(context.serialize(attachment));
+                attachmentSerializer.write(out, attachment);
             }
-            jsonObject.add("attachments", attachmentsArray);
+            out.endArray();
         }
 
         if (notification.getCc() != null) {
-            JsonArray ccArray = new JsonArray();
-            for (String cc : notification.getCc()) {
-                ccArray.add(cc);
-            }
-            jsonObject.add("cc", ccArray);
+            out.name("cc");
+            writeStrings(out, notification.getCc());
         }
 
         if (notification.getBcc() != null) {
-            JsonArray bccArray = new JsonArray();
-            for (String bcc : notification.getBcc()) {
-                bccArray.add(bcc);
-            }
-            jsonObject.add("bcc", bccArray);
+            out.name("bcc");
+            writeStrings(out, notification.getBcc());
         }
 
-        if (notification.getFormat() != null) {
-            jsonObject.addProperty("format", notification.getFormat());
+        if (notification.getFormatName() != null) {
+            out.name("format").value(notification.getFormatName());
         }
 
-        if (notification.getPriority() != null) {
-            jsonObject.addProperty("priority", notification.getPriority());
+        if (notification.getPriorityName() != null) {
+            out.name("priority").value(notification.getPriorityName());
         }
 
-        return jsonObject;
+        out.endObject();
     }
 
     @Override
-    public Notification deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-        JsonObject jsonObject = json.getAsJsonObject();
-
-        Notification.Builder builder = new Notification.Builder();
-
-        if (jsonObject.has("id")) {
-            builder.id(jsonObject.get("id").getAsString());
-        }
-
-        if (jsonObject.has("time") && !jsonObject.get("time").isJsonNull()) {
-            builder.time(context.deserialize(jsonObject.get("time"), Instant.class));
-        }
-
-        if (jsonObject.has("type") && !jsonObject.get("type").isJsonNull()) {
-            builder.type(jsonObject.get("type").getAsString());
-        }
-
-        if (jsonObject.has("recipient") && !jsonObject.get("recipient").isJsonNull()) {
-            builder.recipient(jsonObject.get("recipient").getAsString());
+    public Notification read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
         }
 
-        if (jsonObject.has("subject") && !jsonObject.get("subject").isJsonNull()) {
-            builder.subject(jsonObject.get("subject").getAsString());
-        }
-
-        if (jsonObject.has("message") && !jsonObject.get("message").isJsonNull()) {
-            builder.message(jsonObject.get("message").getAsString());
-        }
+        Notification.Builder builder = new Notification.Builder();
 
-        if (jsonObject.has("attachments") && !jsonObject.get("attachments").isJsonNull()) {
-            JsonArray attachmentsArray = jsonObject.getAsJsonArray("attachments");
-            List<Attachment> attachments = new ArrayList<>();
-            for (JsonElement element : attachmentsArray) {
-                attachments.add(context.deserialize(element, Attachment.class));
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
             }
-            builder.attachments(attachments);
-        }
-
-        if (jsonObject.has("cc") && !jsonObject.get("cc").isJsonNull()) {
-            JsonArray ccArray = jsonObject.getAsJsonArray("cc");
-            List<String> ccList = new ArrayList<>();
-            for (JsonElement element : ccArray) {
-                ccList.add(element.getAsString());
+            switch (name) {
+                case "id":
+                    builder.id(in.nextString());
+                    break;
+                case "time":
+                    builder.time(instantSerializer.read(in));
+                    break;
+                case "type":
+                    builder.type(in.nextString());
+                    break;
+                case "recipient":
+                    builder.recipient(in.nextString());
+                    break;
+                case "subject":
+                    builder.subject(in.nextString());
+                    break;
+                case "message":
+                    builder.message(in.nextString());
+                    break;
+                case "attachments":
+                    List<Attachment> attachments = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        attachments.add(attachmentSerializer.read(in));
+                    }
+                    in.endArray();
+                    builder.attachments(attachments);
+                    break;
+                case "cc":
+                    builder.cc(readStrings(in));
+                    break;
+                case "bcc":
+                    builder.bcc(readStrings(in));
+                    break;
+                case "format":
+                    builder.format(in.nextString());
+                    break;
+                case "priority":
+                    builder.priority(in.nextString());
+                    break;
+                default:
+                    in.skipValue();
+                    break;
             }
-            builder.cc(ccList);
         }
+        in.endObject();
 
-        if (jsonObject.has("bcc") && !jsonObject.get("bcc").isJsonNull()) {
-            JsonArray bccArray = jsonObject.getAsJsonArray("bcc");
-            List<String> bccList = new ArrayList<>();
-            for (JsonElement element : bccArray) {
-                bccList.add(element.getAsString());
-            }
-            builder.bcc(bccList);
-        }
+        return builder.build();
+    }
 
-        if (jsonObject.has("format") && !jsonObject.get("format").isJsonNull()) {
-            builder.format(jsonObject.get("format").getAsString());
+    private static void writeStrings(JsonWriter out, List<String> values) throws IOException {
+        out.beginArray();
+        for (String value : values) {
+            out.value(value);
         }
+        out.endArray();
+    }
 
-        if (jsonObject.has("priority") && !jsonObject.get("priority").isJsonNull()) {
-            builder.priority(jsonObject.get("priority").getAsString());
+    private static List<String> readStrings(JsonReader in) throws IOException {
+        List<String> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            values.add(in.nextString());
         }
-
-        return builder.build();
+        in.endArray();
+        return values;
     }
 
-}
\ No newline at end of file
+}
@@ -1,17 +1,32 @@
 package pl.alyx.library.notification.model;
 
+import pl.alyx.library.notification.utils.ByteBufferInputStream;
+
+import javax.activation.DataSource;
+import javax.mail.EncodingAware;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.UUID;
 
 public class Attachment {
 
+    private static final String DEFAULT_MIME = "application/octet-stream";
+
     private final String file;
     private final String mime;
-    private final byte[] data;
+    private final Source source;
 
-    private Attachment(String file, String mime, byte[] data) {
+    private Attachment(String file, String mime, Source source) {
         this.file = file;
         this.mime = mime;
-        this.data = data == null || data.length == 0 ? null : data.clone();
+        this.source = source;
     }
 
     public String getFile() {
@@ -22,8 +37,27 @@ public class Attachment {
         return mime;
     }
 
+    public boolean hasData() {
+        return source != null;
+    }
+
     public byte[] getData() {
-        return data == null ? null : data.clone();
+        if (source == null) {
+            return null;
+        }
+        try {
+            return source.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read attachment data", e);
+        }
+    }
+
+    public long getSize() {
+        return source == null ? -1L : source.size();
+    }
+
+    public DataSource getDataSource() {
+        return source;
     }
 
     public String getContentID() {
@@ -36,14 +70,183 @@ public class Attachment {
         return contentID;
     }
 
+    public interface StreamSupplier {
+
+        InputStream open() throws IOException;
+
+    }
+
+    private abstract static class Source implements DataSource, EncodingAware {
+
+        private final String name;
+        private final String mime;
+
+        private Source(String name, String mime) {
+            this.name = name;
+            this.mime = mime == null ? DEFAULT_MIME : mime;
+        }
+
+        @Override
+        public String getContentType() {
+            return mime;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getEncoding() {
+            // binary content is always base64, which spares JavaMail a scan of the whole stream
+            return mime.regionMatches(true, 0, "text/", 0, 5) ? null : "base64";
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            throw new IOException("Attachment data is read-only");
+        }
+
+        long size() {
+            return -1L;
+        }
+
+        byte[] toByteArray() throws IOException {
+            try (InputStream in = getInputStream()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int count;
+                while ((count = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, count);
+                }
+                return out.toByteArray();
+            }
+        }
+
+    }
+
+    private static final class BytesSource extends Source {
+
+        private final byte[] data;
+
+        private BytesSource(String name, String mime, byte[] data) {
+            super(name, mime);
+            this.data = data;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(data);
+        }
+
+        @Override
+        long size() {
+            return data.length;
+        }
+
+        @Override
+        byte[] toByteArray() {
+            return data.clone();
+        }
+
+    }
+
+    private static final class BufferSource extends Source {
+
+        private final ByteBuffer buffer;
+
+        private BufferSource(String name, String mime, ByteBuffer buffer) {
+            super(name, mime);
+            this.buffer = buffer.asReadOnlyBuffer();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteBufferInputStream(buffer.duplicate());
+        }
+
+        @Override
+        long size() {
+            return buffer.remaining();
+        }
+
+        @Override
+        byte[] toByteArray() {
+            byte[] data = new byte[buffer.remaining()];
+            buffer.duplicate().get(data);
+            return data;
+        }
+
+    }
+
+    private static final class PathSource extends Source {
+
+        private final Path path;
+
+        private PathSource(String name, String mime, Path path) {
+            super(name, mime);
+            this.path = path;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(path);
+        }
+
+        @Override
+        long size() {
+            try {
+                return Files.size(path);
+            } catch (IOException e) {
+                return -1L;
+            }
+        }
+
+        @Override
+        byte[] toByteArray() throws IOException {
+            return Files.readAllBytes(path);
+        }
+
+    }
+
+    private static final class StreamSource extends Source {
+
+        private final StreamSupplier supplier;
+
+        private StreamSource(String name, String mime, StreamSupplier supplier) {
+            super(name, mime);
+            this.supplier = supplier;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return supplier.open();
+        }
+
+    }
+
     public static class Builder {
 
         private String file;
         private String mime;
         private byte[] data;
+        private ByteBuffer buffer;
+        private Path path;
+        private StreamSupplier stream;
 
         public Attachment build() {
-            return new Attachment(file, mime, data);
+            Source source = null;
+            String name = file == null ? null : file.replaceAll(".*[\\\\/]", "");
+            if (data != null && data.length > 0) {
+                source = new BytesSource(name, mime, data);
+            } else if (buffer != null && buffer.hasRemaining()) {
+                source = new BufferSource(name, mime, buffer);
+            } else if (path != null) {
+                source = new PathSource(name == null ? path.getFileName().toString() : name, mime, path);
+            } else if (stream != null) {
+                source = new StreamSource(name, mime, stream);
+            }
+            return new Attachment(file, mime, source);
         }
 
         public Builder file(String file) {
@@ -61,6 +264,21 @@ public class Attachment {
             return this;
         }
 
+        public Builder buffer(ByteBuffer buffer) {
+            this.buffer = buffer;
+            return this;
+        }
+
+        public Builder path(Path path) {
+            this.path = path;
+            return this;
+        }
+
+        public Builder stream(StreamSupplier stream) {
+            this.stream = stream;
+            return this;
+        }
+
     }
 
 }
@@ -0,0 +1,23 @@
+package pl.alyx.library.notification.model;
+
+public enum Format {
+    TEXT,
+    HTML,
+    // scans the message for markup and picks one of the above
+    AUTO,
+    ;
+
+    public static Format fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        String name = value.trim();
+        for (Format format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+}
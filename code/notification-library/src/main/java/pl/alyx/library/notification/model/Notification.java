@@ -2,52 +2,69 @@ package pl.alyx.library.notification.model;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.UUID;
 
 public class Notification {
 
+    // a UUID id is kept as two longs and only rendered when asked for, other ids are kept as given
     private final String id;
+    private final long idHigh;
+    private final long idLow;
     private final Instant time;
-    private final String type; // "EMAIL", "SMS", "VOICE"
+    private final NotificationType type;
+    private final String typeName;
     private final String recipient; // "filip@local.com", "+48 12343242", "fgolewski:DXX"
     private final String subject;
     private final String message;
     private final List<Attachment> attachments;
     private final List<String> cc;
     private final List<String> bcc;
-    private final String format;
-    private final String priority;
+    private final Format format;
+    private final String formatName;
+    private final Priority priority;
+    private final String priorityName;
 
-    private Notification(String id, Instant time, String type, String recipient, String subject, String message, List<Attachment> attachments, List<String> cc, List<String> bcc, String format, String priority) {
-        this.id = Objects.requireNonNull(id);
-        this.time = time == null ? null : time.truncatedTo(ChronoUnit.MILLIS);
-        this.type = type == null || type.trim().isEmpty() ? null : type.trim().toUpperCase();
+    // the name fields only hold values that are not enum constants, so they survive a JSON round trip
+    private Notification(String id, long idHigh, long idLow, Instant time, NotificationType type, String typeName, String recipient, String subject, String message, List<Attachment> attachments, List<String> cc, List<String> bcc, Format format, String formatName, Priority priority, String priorityName) {
+        this.id = id;
+        this.idHigh = idHigh;
+        this.idLow = idLow;
+        this.time = time == null || time.getNano() % 1_000_000 == 0 ? time : time.truncatedTo(ChronoUnit.MILLIS);
+        this.type = type;
+        this.typeName = type == null ? typeName : null;
         this.recipient = recipient;
         this.subject = subject;
         this.message = Objects.requireNonNull(message);
-        this.attachments = attachments == null || attachments.isEmpty() ? null : Collections.unmodifiableList(new ArrayList<>(attachments));
-        this.cc = cc == null || cc.isEmpty() ? null : Collections.unmodifiableList(new ArrayList<>(cc));
-        this.bcc = bcc == null || bcc.isEmpty() ? null : Collections.unmodifiableList(new ArrayList<>(bcc));
-        this.format = format == null || format.trim().isEmpty() ? null : format.trim().toUpperCase();
-        this.priority = priority == null || priority.trim().isEmpty() ? null : priority.trim().toUpperCase();
+        this.attachments = attachments;
+        this.cc = cc;
+        this.bcc = bcc;
+        this.format = format;
+        this.formatName = format == null ? formatName : null;
+        this.priority = priority;
+        this.priorityName = priority == null ? priorityName : null;
     }
 
     public String getId() {
-        return id;
+        return id != null ? id : new UUID(idHigh, idLow).toString();
     }
 
     public Instant getTime() {
         return time;
     }
 
-    public String getType() {
+    public NotificationType getType() {
         return type;
     }
 
+    public String getTypeName() {
+        return type != null ? type.name() : typeName;
+    }
+
     public String getRecipient() {
         return recipient;
     }
@@ -72,38 +89,58 @@ public class Notification {
         return bcc;
     }
 
-    public String getFormat() {
+    public Format getFormat() {
         return format;
     }
 
-    public String getPriority() {
+    public String getFormatName() {
+        return format != null ? format.name() : formatName;
+    }
+
+    public Priority getPriority() {
         return priority;
     }
 
+    public String getPriorityName() {
+        return priority != null ? priority.name() : priorityName;
+    }
+
     public static class Builder {
 
         private String id;
+        private long idHigh;
+        private long idLow;
+        private boolean compactId;
         private Instant time;
-        private String type;
+        private NotificationType type;
+        private String typeName;
         private String recipient;
         private String subject;
         private String message;
         private List<String> cc;
         private List<String> bcc;
         private List<Attachment> attachments;
-        private String format;
-        private String priority;
+        private Format format;
+        private String formatName;
+        private Priority priority;
+        private String priorityName;
 
         public Builder() {
-            this.id = UUID.randomUUID().toString();
+            id(UUID.randomUUID());
             this.time = Instant.now().truncatedTo(ChronoUnit.MILLIS);
         }
 
         public Notification build() {
+            if (!compactId) {
+                Objects.requireNonNull(id);
+            }
             Notification notification = new Notification(
-                    id,
+                    compactId ? null : id,
+                    idHigh,
+                    idLow,
                     time,
                     type,
+                    typeName,
                     recipient,
                     subject,
                     message,
@@ -111,18 +148,41 @@ public class Notification {
                     cc,
                     bcc,
                     format,
-                    priority
+                    formatName,
+                    priority,
+                    priorityName
             );
             return notification;
         }
 
         public Builder id(String id) {
-            this.id = id;
+            if (parseUuid(id)) {
+                this.id = null;
+                this.compactId = true;
+            } else {
+                this.id = id;
+                this.compactId = false;
+            }
+            return this;
+        }
+
+        public Builder id(UUID id) {
+            this.idHigh = id.getMostSignificantBits();
+            this.idLow = id.getLeastSignificantBits();
+            this.id = null;
+            this.compactId = true;
             return this;
         }
 
         public Builder type(String type) {
+            this.typeName = normalize(type);
+            this.type = NotificationType.fromString(typeName);
+            return this;
+        }
+
+        public Builder type(NotificationType type) {
             this.type = type;
+            this.typeName = null;
             return this;
         }
 
@@ -147,30 +207,95 @@ public class Notification {
         }
 
         public Builder attachments(List<Attachment> attachments) {
-            this.attachments = attachments == null || attachments.isEmpty() ? null : new ArrayList<>(attachments);
+            this.attachments = copy(attachments);
             return this;
         }
 
         public Builder cc(List<String> cc) {
-            this.cc = cc == null || cc.isEmpty() ? null : new ArrayList<>(cc);
+            this.cc = copy(cc);
             return this;
         }
 
         public Builder bcc(List<String> bcc) {
-            this.bcc = bcc == null || bcc.isEmpty() ? null : new ArrayList<>(bcc);
+            this.bcc = copy(bcc);
             return this;
         }
 
         public Builder format(String format) {
+            this.formatName = normalize(format);
+            this.format = Format.fromString(formatName);
+            return this;
+        }
+
+        public Builder format(Format format) {
             this.format = format;
+            this.formatName = null;
             return this;
         }
 
         public Builder priority(String priority) {
+            this.priorityName = normalize(priority);
+            this.priority = Priority.fromString(priorityName);
+            return this;
+        }
+
+        public Builder priority(Priority priority) {
             this.priority = priority;
+            this.priorityName = null;
             return this;
         }
 
+        private static String normalize(String value) {
+            return value == null || value.trim().isEmpty() ? null : value.trim().toUpperCase(Locale.ROOT);
+        }
+
+        // the only copy of a list, shared by every notification built from this builder
+        @SuppressWarnings("unchecked")
+        private static <T> List<T> copy(List<T> list) {
+            if (list == null || list.isEmpty()) {
+                return null;
+            }
+            if (list.size() == 1) {
+                return Collections.singletonList(list.get(0));
+            }
+            return Collections.unmodifiableList((List<T>) Arrays.asList(list.toArray()));
+        }
+
+        private boolean parseUuid(String id) {
+            if (id == null || id.length() != 36) {
+                return false;
+            }
+            long high = 0;
+            long low = 0;
+            int digits = 0;
+            for (int i = 0; i < 36; i++) {
+                char c = id.charAt(i);
+                if (i == 8 || i == 13 || i == 18 || i == 23) {
+                    if (c != '-') {
+                        return false;
+                    }
+                    continue;
+                }
+                int value;
+                if (c >= '0' && c <= '9') {
+                    value = c - '0';
+                } else if (c >= 'a' && c <= 'f') {
+                    value = c - 'a' + 10;
+                } else {
+                    // upper case ids are kept as strings, so they are returned unchanged
+                    return false;
+                }
+                if (digits++ < 16) {
+                    high = high << 4 | value;
+                } else {
+                    low = low << 4 | value;
+                }
+            }
+            this.idHigh = high;
+            this.idLow = low;
+            return true;
+        }
+
     }
     
 }
@@ -0,0 +1,22 @@
+package pl.alyx.library.notification.model;
+
+public enum NotificationType {
+    EMAIL,
+    SMS,
+    VOICE,
+    ;
+
+    public static NotificationType fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        String name = value.trim();
+        for (NotificationType type : values()) {
+            if (type.name().equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,22 @@
+package pl.alyx.library.notification.model;
+
+public enum Priority {
+    HIGH,
+    NORMAL,
+    LOW,
+    ;
+
+    public static Priority fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        String name = value.trim();
+        for (Priority priority : values()) {
+            if (priority.name().equalsIgnoreCase(name)) {
+                return priority;
+            }
+        }
+        return null;
+    }
+
+}
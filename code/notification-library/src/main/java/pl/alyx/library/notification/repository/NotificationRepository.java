@@ -1,4 +1,19 @@
 package pl.alyx.library.notification.repository;
 
-public interface NotificationRepository {
+import pl.alyx.library.notification.model.Notification;
+
+import java.util.List;
+
+public interface NotificationRepository extends AutoCloseable {
+
+    void store(Notification notification);
+
+    void acknowledge(String id);
+
+    List<Notification> findPending();
+
+    @Override
+    default void close() {
+    }
+
 }
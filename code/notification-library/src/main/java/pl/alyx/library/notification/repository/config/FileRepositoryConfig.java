@@ -3,17 +3,49 @@ package pl.alyx.library.notification.repository.config;
 public class FileRepositoryConfig {
 
     private final String path;
+    private final long segmentSize;
+    private final boolean sync;
 
-    private FileRepositoryConfig(String path) {
+    private FileRepositoryConfig(String path, long segmentSize, boolean sync) {
         this.path = path;
+        this.segmentSize = segmentSize;
+        this.sync = sync;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    public boolean getSync() {
+        return sync;
     }
 
     public static class Builder {
 
         private String path;
+        private long segmentSize = 64L * 1024 * 1024;
+        private boolean sync = true;
 
         public FileRepositoryConfig build() {
-            return new FileRepositoryConfig(path);
+            validate();
+            return new FileRepositoryConfig(
+                    path,
+                    segmentSize,
+                    sync
+            );
+        }
+
+        private void validate() {
+            if (path == null || path.trim().isEmpty()) {
+                throw new IllegalArgumentException("Repository path is required");
+            }
+            if (segmentSize < 1024 || segmentSize > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Segment size must be between 1024 bytes and 2 GB");
+            }
         }
 
         public Builder path(String path) {
@@ -21,6 +53,16 @@ public class FileRepositoryConfig {
             return this;
         }
 
+        public Builder segmentSize(long segmentSize) {
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        public Builder sync(boolean sync) {
+            this.sync = sync;
+            return this;
+        }
+
     }
 
 }
@@ -1,6 +1,29 @@
 package pl.alyx.library.notification.repository.impl;
 
+import pl.alyx.library.notification.json.JsonUtils;
+import pl.alyx.library.notification.model.Notification;
 import pl.alyx.library.notification.repository.NotificationRepository;
 
+import java.util.Collections;
+import java.util.List;
+
 public class ConsoleRepository implements NotificationRepository {
+
+    @Override
+    public void store(Notification notification) {
+        synchronized (System.out) {
+            JsonUtils.toJson(notification, System.out);
+            System.out.println();
+        }
+    }
+
+    @Override
+    public void acknowledge(String id) {
+    }
+
+    @Override
+    public List<Notification> findPending() {
+        return Collections.emptyList();
+    }
+
 }
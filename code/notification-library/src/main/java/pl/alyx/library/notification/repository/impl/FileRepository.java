@@ -1,11 +1,614 @@
 package pl.alyx.library.notification.repository.impl;
 
+import pl.alyx.library.notification.exception.RepositoryException;
+import pl.alyx.library.notification.json.JsonUtils;
+import pl.alyx.library.notification.model.Notification;
 import pl.alyx.library.notification.repository.NotificationRepository;
 import pl.alyx.library.notification.repository.config.FileRepositoryConfig;
+import pl.alyx.library.notification.utils.ByteBufferInputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
 
 public class FileRepository implements NotificationRepository {
 
+    private static final int MAGIC = 0x4E4F5431;
+    private static final int SEGMENT_HEADER_SIZE = 4;
+    // length, crc, type, time, id length
+    private static final int RECORD_HEADER_SIZE = 4 + 4 + 1 + 8 + 2;
+    private static final int MAX_RECORD_SIZE = Integer.MAX_VALUE - 8;
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final int MIN_MAPPING_SIZE = 64 * 1024;
+
+    private static final byte TYPE_STORE = 1;
+    private static final byte TYPE_ACKNOWLEDGE = 2;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final long segmentSize;
+    private final boolean sync;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Map<String, Location> pending = new ConcurrentHashMap<>();
+    // closed segments whose files still have to be deleted, oldest first
+    private final Deque<Path> obsolete = new ArrayDeque<>();
+    private final BlockingQueue<Write> queue = new LinkedBlockingQueue<>();
+    private final Write shutdown = new Write(null, null, null);
+    private final Thread writer;
+    private Segment active;
+    private volatile IOException failure;
+    private volatile boolean closed;
+
     public FileRepository(FileRepositoryConfig config) {
+        this.directory = Paths.get(config.getPath());
+        this.segmentSize = config.getSegmentSize();
+        this.sync = config.getSync();
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            closeSegments();
+            throw new RepositoryException("Unable to open file repository in " + directory, e);
+        }
+        this.writer = new Thread(this::run, "file-repository-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void store(Notification notification) {
+        long time = notification.getTime() == null ? 0L : notification.getTime().toEpochMilli();
+        await(submit(TYPE_STORE, notification.getId(), time, notification));
+    }
+
+    @Override
+    public void acknowledge(String id) {
+        if (pending.containsKey(id)) {
+            submit(TYPE_ACKNOWLEDGE, id, 0L, null);
+        }
+    }
+
+    @Override
+    public List<Notification> findPending() {
+        List<Location> locations = new ArrayList<>(pending.values());
+        locations.sort(Comparator.comparingLong((Location location) -> location.segment)
+                .thenComparingLong(location -> location.offset));
+        List<Notification> notifications = new ArrayList<>(locations.size());
+        for (Location location : locations) {
+            Notification notification = read(location);
+            if (notification != null) {
+                notifications.add(notification);
+            }
+        }
+        return notifications;
+    }
+
+    public Notification find(String id) {
+        for (Segment segment : segments.descendingMap().values()) {
+            long offset = segment.index.find(id);
+            if (offset >= 0) {
+                ByteBuffer record = segment.record(offset);
+                return record == null ? null : decode(record);
+            }
+        }
+        return null;
+    }
+
+    public List<Notification> findByTime(Instant from, Instant to) {
+        long start = from.toEpochMilli();
+        long end = to.toEpochMilli();
+        List<long[]> entries = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            if (!segment.index.overlaps(start, end)) {
+                continue;
+            }
+            long[] range = segment.index.range(start, end);
+            for (int i = 0; i < range.length; i += 2) {
+                entries.add(new long[]{range[i], segment.id, range[i + 1]});
+            }
+        }
+        entries.sort(Comparator.comparingLong((long[] entry) -> entry[0])
+                .thenComparingLong(entry -> entry[1])
+                .thenComparingLong(entry -> entry[2]));
+        List<Notification> notifications = new ArrayList<>(entries.size());
+        for (long[] entry : entries) {
+            Segment segment = segments.get(entry[1]);
+            ByteBuffer record = segment == null ? null : segment.record(entry[2]);
+            if (record != null) {
+                notifications.add(decode(record));
+            }
+        }
+        return notifications;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.add(shutdown);
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        closeSegments();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<Void> submit(byte type, String id, long time, Notification notification) {
+        if (closed) {
+            throw new RepositoryException("File repository is closed");
+        }
+        if (failure != null) {
+            throw new RepositoryException("File repository failed", failure);
+        }
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        if (idBytes.length > Short.MAX_VALUE) {
+            throw new RepositoryException("Notification id is too long");
+        }
+        // the payload is serialized straight behind a reserved header, without an intermediate string
+        RecordOutputStream out = new RecordOutputStream(RECORD_HEADER_SIZE + idBytes.length + 512);
+        out.write(new byte[RECORD_HEADER_SIZE], 0, RECORD_HEADER_SIZE);
+        out.write(idBytes, 0, idBytes.length);
+        if (notification != null) {
+            JsonUtils.toJson(notification, out);
+        }
+        if (out.size() > MAX_RECORD_SIZE) {
+            throw new RepositoryException("Notification is too large to store");
+        }
+        ByteBuffer buffer = out.toByteBuffer();
+        int size = buffer.remaining();
+        buffer.putInt(0, size - 8);
+        buffer.put(8, type);
+        buffer.putLong(9, time);
+        buffer.putShort(RECORD_HEADER_SIZE - 2, (short) idBytes.length);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 8, size - 8);
+        buffer.putInt(4, (int) crc.getValue());
+        Write write = new Write(id, buffer, new CompletableFuture<>());
+        queue.add(write);
+        return write.future;
+    }
+
+    private static void await(CompletableFuture<Void> future) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    future.get();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    throw new RepositoryException("Unable to write to file repository", e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        List<Write> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            batch.clear();
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+            try {
+                boolean written = false;
+                for (Write write : batch) {
+                    if (write == shutdown) {
+                        running = false;
+                    } else {
+                        append(write);
+                        written = true;
+                    }
+                }
+                // group commit, one fsync for the whole batch
+                if (written && sync) {
+                    active.channel.force(false);
+                }
+                removeObsoleteSegments();
+                for (Write write : batch) {
+                    if (write != shutdown) {
+                        write.future.complete(null);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                for (Write write : batch) {
+                    if (write != shutdown) {
+                        write.future.completeExceptionally(e);
+                    }
+                }
+            }
+        }
+        Write write;
+        while ((write = queue.poll()) != null) {
+            if (write != shutdown) {
+                write.future.completeExceptionally(new RepositoryException("File repository is closed"));
+            }
+        }
+    }
+
+    private void append(Write write) throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        ByteBuffer buffer = write.buffer;
+        byte type = buffer.get(8);
+        if (type == TYPE_ACKNOWLEDGE && !pending.containsKey(write.id)) {
+            return;
+        }
+        if (active.size > SEGMENT_HEADER_SIZE && active.size + buffer.remaining() > segmentSize) {
+            roll();
+        }
+        long offset = active.size;
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            active.channel.write(buffer, offset + buffer.position());
+        }
+        active.size = offset + length;
+        apply(type, write.id, buffer.getLong(9), new Location(active.id, offset));
+    }
+
+    private void apply(byte type, String id, long time, Location location) {
+        if (type == TYPE_STORE) {
+            Location previous = pending.put(id, location);
+            if (previous != null) {
+                release(previous);
+            }
+            Segment segment = segments.get(location.segment);
+            segment.live++;
+            segment.index.add(id, time, location.offset);
+        } else if (type == TYPE_ACKNOWLEDGE) {
+            Location previous = pending.remove(id);
+            if (previous != null) {
+                release(previous);
+            }
+        }
+    }
+
+    private void release(Location location) {
+        Segment segment = segments.get(location.segment);
+        if (segment != null) {
+            segment.live--;
+        }
+    }
+
+    private void roll() throws IOException {
+        if (sync) {
+            active.channel.force(false);
+        }
+        active = createSegment(active.id + 1);
+    }
+
+    private void removeObsoleteSegments() {
+        // segments are removed oldest first, so acknowledgements of a removed
+        // segment never outlive the segment they refer to; a file that cannot
+        // be deleted stops the removal until the next compaction retries it
+        if (!deleteObsoleteSegments()) {
+            return;
+        }
+        Map.Entry<Long, Segment> entry;
+        while ((entry = segments.firstEntry()) != null) {
+            Segment segment = entry.getValue();
+            if (segment == active || segment.live > 0) {
+                break;
+            }
+            segments.remove(entry.getKey());
+            segment.close();
+            obsolete.add(segment.path);
+            if (!deleteObsoleteSegments()) {
+                return;
+            }
+        }
+    }
+
+    private boolean deleteObsoleteSegments() {
+        Path path;
+        while ((path = obsolete.peek()) != null) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                return false;
+            }
+            obsolete.poll();
+        }
+        return true;
+    }
+
+    private Notification read(Location location) {
+        Segment segment = segments.get(location.segment);
+        ByteBuffer record = segment == null ? null : segment.record(location.offset);
+        return record == null ? null : decode(record);
+    }
+
+    private static Notification decode(ByteBuffer record) {
+        int idLength = record.getShort(RECORD_HEADER_SIZE - 2);
+        record.position(RECORD_HEADER_SIZE + idLength);
+        return JsonUtils.fromJson(new ByteBufferInputStream(record), Notification.class);
+    }
+
+    private void recover() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                String number = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+                try {
+                    ids.add(Long.parseLong(number));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        ids.sort(null);
+        for (int i = 0; i < ids.size(); i++) {
+            Segment segment = openSegment(ids.get(i));
+            segments.put(segment.id, segment);
+            replay(segment, i == ids.size() - 1);
+        }
+        if (segments.isEmpty()) {
+            active = createSegment(1);
+        } else {
+            active = segments.lastEntry().getValue();
+            if (active.size >= segmentSize) {
+                active = createSegment(active.id + 1);
+            }
+        }
+        removeObsoleteSegments();
+    }
+
+    private void replay(Segment segment, boolean last) throws IOException {
+        FileChannel channel = segment.channel;
+        long fileSize = channel.size();
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IOException("Segment is too large: " + segment.path);
+        }
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        CRC32 crc = new CRC32();
+        byte[] id = new byte[Short.MAX_VALUE];
+        int offset = SEGMENT_HEADER_SIZE;
+        while (offset + RECORD_HEADER_SIZE <= fileSize) {
+            int length = mapped.getInt(offset);
+            if (length < RECORD_HEADER_SIZE - 8 || offset + 8L + length > fileSize) {
+                break;
+            }
+            ByteBuffer body = mapped.duplicate();
+            body.limit(offset + 8 + length).position(offset + 8);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != mapped.getInt(offset + 4)) {
+                break;
+            }
+            byte type = mapped.get(offset + 8);
+            long time = mapped.getLong(offset + 9);
+            int idLength = mapped.getShort(offset + RECORD_HEADER_SIZE - 2);
+            if (idLength < 0 || RECORD_HEADER_SIZE + idLength > length + 8) {
+                break;
+            }
+            ByteBuffer idBuffer = mapped.duplicate();
+            idBuffer.position(offset + RECORD_HEADER_SIZE);
+            idBuffer.get(id, 0, idLength);
+            apply(type, new String(id, 0, idLength, StandardCharsets.UTF_8), time, new Location(segment.id, offset));
+            offset += length + 8;
+        }
+        segment.size = offset;
+        if (offset == fileSize) {
+            segment.mapped = mapped;
+        }
+        if (offset < fileSize && last) {
+            // torn write at the tail of the log, drop it
+            channel.truncate(offset);
+            channel.force(true);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Path path = segmentPath(id);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        if (channel.size() < SEGMENT_HEADER_SIZE) {
+            header.putInt(0, MAGIC);
+            channel.truncate(0);
+            channel.write(header, 0);
+        } else {
+            readFully(channel, header, 0);
+            if (header.getInt(0) != MAGIC) {
+                channel.close();
+                throw new IOException("Not a notification segment: " + path);
+            }
+        }
+        return new Segment(id, path, channel, SEGMENT_HEADER_SIZE, segmentSize);
+    }
+
+    private Segment createSegment(long id) throws IOException {
+        Path path = segmentPath(id);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        header.putInt(0, MAGIC);
+        channel.write(header, 0);
+        Segment segment = new Segment(id, path, channel, SEGMENT_HEADER_SIZE, segmentSize);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private void closeSegments() {
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    private static final class Segment {
+
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private final long limit;
+        private final SegmentIndex index = new SegmentIndex();
+        private volatile long size;
+        private volatile MappedByteBuffer mapped;
+        private int live;
+
+        private Segment(long id, Path path, FileChannel channel, long size, long limit) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.size = size;
+            this.limit = limit;
+        }
+
+        private ByteBuffer record(long offset) {
+            MappedByteBuffer buffer = map(offset + 4);
+            if (buffer == null) {
+                return null;
+            }
+            int length = buffer.getInt((int) offset) + 8;
+            buffer = map(offset + length);
+            if (buffer == null) {
+                return null;
+            }
+            ByteBuffer record = buffer.duplicate();
+            record.limit((int) offset + length).position((int) offset);
+            return record.slice();
+        }
+
+        private MappedByteBuffer map(long end) {
+            MappedByteBuffer buffer = mapped;
+            if (buffer != null && buffer.capacity() >= end) {
+                return buffer;
+            }
+            synchronized (this) {
+                buffer = mapped;
+                if (buffer != null && buffer.capacity() >= end) {
+                    return buffer;
+                }
+                if (!channel.isOpen()) {
+                    // segment was removed after all of its notifications were acknowledged
+                    return null;
+                }
+                long size = this.size;
+                if (end > size) {
+                    return null;
+                }
+                // the active segment grows, so the mapping is doubled up to the segment size
+                // instead of being replaced on every read past its end; the file is extended
+                // with zeros, which replay treats as the end of the log
+                long capacity = buffer == null ? 0 : buffer.capacity();
+                long length = Math.max(size, Math.min(Math.max(2 * capacity, MIN_MAPPING_SIZE), limit));
+                try {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                } catch (IOException e) {
+                    if (!channel.isOpen()) {
+                        return null;
+                    }
+                    throw new RepositoryException("Unable to map segment " + path, e);
+                }
+                mapped = buffer;
+                return buffer;
+            }
+        }
+
+        private void close() {
+            mapped = null;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+    }
+
+    private static final class Location {
+
+        private final long segment;
+        private final long offset;
+
+        private Location(long segment, long offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+    }
+
+    private static final class RecordOutputStream extends ByteArrayOutputStream {
+
+        private RecordOutputStream(int size) {
+            super(size);
+        }
+
+        private ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+
+    }
+
+    private static final class Write {
+
+        private final String id;
+        private final ByteBuffer buffer;
+        private final CompletableFuture<Void> future;
+
+        private Write(String id, ByteBuffer buffer, CompletableFuture<Void> future) {
+            this.id = id;
+            this.buffer = buffer;
+            this.future = future;
+        }
+
     }
 
 }
@@ -0,0 +1,67 @@
+package pl.alyx.library.notification.repository.impl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+class SegmentIndex {
+
+    private final Map<String, Long> ids = new HashMap<>();
+    private long[] times = new long[64];
+    private long[] offsets = new long[64];
+    private int size;
+
+    synchronized void add(String id, long time, long offset) {
+        ids.put(id, offset);
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            offsets = Arrays.copyOf(offsets, size * 2);
+        }
+        // records are appended in nearly chronological order, so keeping the
+        // arrays sorted only shifts a few entries at the tail
+        int index = size;
+        while (index > 0 && times[index - 1] > time) {
+            times[index] = times[index - 1];
+            offsets[index] = offsets[index - 1];
+            index--;
+        }
+        times[index] = time;
+        offsets[index] = offset;
+        size++;
+    }
+
+    synchronized long find(String id) {
+        Long offset = ids.get(id);
+        return offset == null ? -1L : offset;
+    }
+
+    synchronized long[] range(long from, long to) {
+        int start = lowerBound(from);
+        int end = Math.max(start, lowerBound(to));
+        long[] entries = new long[2 * (end - start)];
+        for (int i = start, j = 0; i < end; i++) {
+            entries[j++] = times[i];
+            entries[j++] = offsets[i];
+        }
+        return entries;
+    }
+
+    synchronized boolean overlaps(long from, long to) {
+        return size > 0 && times[0] < to && times[size - 1] >= from;
+    }
+
+    private int lowerBound(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (times[middle] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+}
@@ -4,8 +4,18 @@ import pl.alyx.library.notification.exception.PermanentSendException;
 import pl.alyx.library.notification.exception.RetryableSendException;
 import pl.alyx.library.notification.model.Notification;
 
-public interface NotificationSender {
+import java.util.Collection;
+
+public interface NotificationSender extends AutoCloseable {
 
     void send(Notification notification) throws PermanentSendException, RetryableSendException;
 
+    default void send(Notification notification, Collection<String> recipients) throws PermanentSendException, RetryableSendException {
+        send(notification);
+    }
+
+    @Override
+    default void close() {
+    }
+
 }
@@ -0,0 +1,105 @@
+package pl.alyx.library.notification.sender.config;
+
+import java.time.Duration;
+
+public class CircuitBreakerConfig {
+
+    private final double failureRate;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final Duration openDuration;
+    private final int halfOpenCalls;
+
+    private CircuitBreakerConfig(double failureRate, int windowSize, int minimumCalls, Duration openDuration, int halfOpenCalls) {
+        this.failureRate = failureRate;
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.openDuration = openDuration;
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    public Duration getOpenDuration() {
+        return openDuration;
+    }
+
+    public int getHalfOpenCalls() {
+        return halfOpenCalls;
+    }
+
+    public static class Builder {
+
+        private double failureRate = 0.5;
+        private int windowSize = 20;
+        private int minimumCalls = 10;
+        private Duration openDuration = Duration.ofSeconds(30);
+        private int halfOpenCalls = 1;
+
+        public CircuitBreakerConfig build() {
+            validate();
+            return new CircuitBreakerConfig(
+                    failureRate,
+                    windowSize,
+                    minimumCalls,
+                    openDuration,
+                    halfOpenCalls
+            );
+        }
+
+        private void validate() {
+            if (!(failureRate > 0.0 && failureRate <= 1.0)) {
+                throw new IllegalArgumentException("Failure rate must be greater than 0.0 and at most 1.0");
+            }
+            if (windowSize < 1) {
+                throw new IllegalArgumentException("Window size must be positive");
+            }
+            if (minimumCalls < 1 || minimumCalls > windowSize) {
+                throw new IllegalArgumentException("Minimum number of calls must be between 1 and the window size");
+            }
+            if (openDuration == null || openDuration.isNegative()) {
+                throw new IllegalArgumentException("Open duration must not be negative");
+            }
+            if (halfOpenCalls < 1) {
+                throw new IllegalArgumentException("Number of half-open calls must be positive");
+            }
+        }
+
+        public Builder failureRate(double failureRate) {
+            this.failureRate = failureRate;
+            return this;
+        }
+
+        public Builder windowSize(int windowSize) {
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        public Builder minimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        public Builder openDuration(Duration openDuration) {
+            this.openDuration = openDuration;
+            return this;
+        }
+
+        public Builder halfOpenCalls(int halfOpenCalls) {
+            this.halfOpenCalls = halfOpenCalls;
+            return this;
+        }
+
+    }
+
+}
@@ -11,8 +11,14 @@ public class MailServerConfig {
     private final String trust;
     private final int timeout;
     private final int connectionTimeout;
-
-    private MailServerConfig(String host, int port, MailServerSecurity security, String user, String password, boolean insecure, String trust, int timeout, int connectionTimeout) {
+    private final int maxConnections;
+    private final int maxMessages;
+    private final int idleTimeout;
+    private final int validationInterval;
+    private final double rate;
+    private final int burst;
+
+    private MailServerConfig(String host, int port, MailServerSecurity security, String user, String password, boolean insecure, String trust, int timeout, int connectionTimeout, int maxConnections, int maxMessages, int idleTimeout, int validationInterval, double rate, int burst) {
         this.host = host;
         this.port = port;
         this.security = security;
@@ -22,6 +28,12 @@ public class MailServerConfig {
         this.trust = trust;
         this.timeout = timeout;
         this.connectionTimeout = connectionTimeout;
+        this.maxConnections = maxConnections;
+        this.maxMessages = maxMessages;
+        this.idleTimeout = idleTimeout;
+        this.validationInterval = validationInterval;
+        this.rate = rate;
+        this.burst = burst;
     }
 
     public String getHost() {
@@ -60,6 +72,30 @@ public class MailServerConfig {
         return connectionTimeout;
     }
 
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getMaxMessages() {
+        return maxMessages;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public int getValidationInterval() {
+        return validationInterval;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
     public static class Builder {
 
         private String host;
@@ -71,6 +107,12 @@ public class MailServerConfig {
         private String trust;
         private int timeout;
         private int connectionTimeout;
+        private int maxConnections = 4;
+        private int maxMessages = 100;
+        private int idleTimeout = 60;
+        private int validationInterval = 5;
+        private double rate;
+        private int burst;
 
         public MailServerConfig build() {
             validate();
@@ -83,7 +125,13 @@ public class MailServerConfig {
                     insecure,
                     trust,
                     timeout,
-                    connectionTimeout
+                    connectionTimeout,
+                    maxConnections,
+                    maxMessages,
+                    idleTimeout,
+                    validationInterval,
+                    rate,
+                    burst > 0 ? burst : Math.max(1, (int) Math.ceil(rate))
             );
         }
 
@@ -91,6 +139,24 @@ public class MailServerConfig {
             if (port > 0 && port > 65535) {
                 throw new IllegalArgumentException("Port number must not exceed 65535");
             }
+            if (maxConnections < 0) {
+                throw new IllegalArgumentException("Maximum number of connections must not be negative");
+            }
+            if (maxMessages < 0) {
+                throw new IllegalArgumentException("Maximum number of messages per connection must not be negative");
+            }
+            if (idleTimeout < 0) {
+                throw new IllegalArgumentException("Idle timeout must not be negative");
+            }
+            if (validationInterval < 0) {
+                throw new IllegalArgumentException("Validation interval must not be negative");
+            }
+            if (rate < 0 || Double.isNaN(rate) || Double.isInfinite(rate)) {
+                throw new IllegalArgumentException("Message rate must be a finite, non-negative number");
+            }
+            if (burst < 0) {
+                throw new IllegalArgumentException("Burst size must not be negative");
+            }
         }
 
         public Builder host(String host) {
@@ -138,6 +204,36 @@ public class MailServerConfig {
             return this;
         }
 
+        public Builder maxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        public Builder maxMessages(int maxMessages) {
+            this.maxMessages = maxMessages;
+            return this;
+        }
+
+        public Builder idleTimeout(int idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        public Builder validationInterval(int validationInterval) {
+            this.validationInterval = validationInterval;
+            return this;
+        }
+
+        public Builder rate(double rate) {
+            this.rate = rate;
+            return this;
+        }
+
+        public Builder burst(int burst) {
+            this.burst = burst;
+            return this;
+        }
+
     }
 
 }
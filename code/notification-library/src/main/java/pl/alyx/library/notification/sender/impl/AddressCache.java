@@ -0,0 +1,78 @@
+package pl.alyx.library.notification.sender.impl;
+
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class AddressCache {
+
+    static final AddressCache DEFAULT = new AddressCache(10_000);
+
+    private final int generationSize;
+    // two generations approximate LRU eviction without locking readers
+    private volatile ConcurrentHashMap<String, Entry> current = new ConcurrentHashMap<>();
+    private volatile ConcurrentHashMap<String, Entry> previous = new ConcurrentHashMap<>();
+
+    AddressCache(int maxSize) {
+        if (maxSize < 2) {
+            throw new IllegalArgumentException("Cache size must be at least 2");
+        }
+        this.generationSize = maxSize / 2;
+    }
+
+    InternetAddress parse(String address) throws AddressException {
+        if (address == null) {
+            throw new AddressException("Address is empty");
+        }
+        Entry entry = current.get(address);
+        if (entry == null) {
+            entry = previous.get(address);
+            if (entry == null) {
+                entry = Entry.of(address);
+            }
+            put(address, entry);
+        }
+        if (entry.error != null) {
+            throw new AddressException(entry.error.getMessage(), entry.error.getRef(), entry.error.getPos());
+        }
+        return entry.address;
+    }
+
+    int size() {
+        return current.size() + previous.size();
+    }
+
+    private void put(String address, Entry entry) {
+        ConcurrentHashMap<String, Entry> map = current;
+        map.put(address, entry);
+        if (map.size() >= generationSize) {
+            synchronized (this) {
+                if (current == map) {
+                    previous = map;
+                    current = new ConcurrentHashMap<>();
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final InternetAddress address;
+        private final AddressException error;
+
+        private Entry(InternetAddress address, AddressException error) {
+            this.address = address;
+            this.error = error;
+        }
+
+        private static Entry of(String address) {
+            try {
+                return new Entry(new InternetAddress(address, true), null);
+            } catch (AddressException e) {
+                return new Entry(null, e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,27 @@
+package pl.alyx.library.notification.sender.impl;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import javax.mail.util.SharedByteArrayInputStream;
+
+class BulkMimeMessage extends MimeMessage {
+
+    BulkMimeMessage(Session session, byte[] data) throws MessagingException {
+        // the content stays a view over the shared bytes and is written out as is
+        super(session, new SharedByteArrayInputStream(data));
+    }
+
+    void prepare(InternetAddress recipient) throws MessagingException {
+        setRecipient(Message.RecipientType.TO, recipient);
+        updateHeaders();
+    }
+
+    @Override
+    protected void updateHeaders() throws MessagingException {
+        updateMessageID();
+    }
+
+}
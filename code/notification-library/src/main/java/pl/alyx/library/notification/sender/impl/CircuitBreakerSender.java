@@ -0,0 +1,173 @@
+package pl.alyx.library.notification.sender.impl;
+
+import pl.alyx.library.notification.exception.CircuitOpenException;
+import pl.alyx.library.notification.exception.PartialSendException;
+import pl.alyx.library.notification.exception.PermanentSendException;
+import pl.alyx.library.notification.exception.RetryableSendException;
+import pl.alyx.library.notification.model.Notification;
+import pl.alyx.library.notification.sender.NotificationSender;
+import pl.alyx.library.notification.sender.config.CircuitBreakerConfig;
+
+import java.util.Collection;
+
+public class CircuitBreakerSender implements NotificationSender {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final NotificationSender sender;
+    private final NotificationSender fallback;
+    private final CircuitBreakerConfig config;
+    private final long openDuration;
+
+    private final Object lock = new Object();
+    // outcomes of the most recent calls in the closed state, true for a failure
+    private final boolean[] window;
+    private int position;
+    private int calls;
+    private int failures;
+    private volatile State state = State.CLOSED;
+    private long openedAt;
+    private int probes;
+    private int successes;
+
+    public CircuitBreakerSender(NotificationSender sender, CircuitBreakerConfig config) {
+        this(sender, config, null);
+    }
+
+    public CircuitBreakerSender(NotificationSender sender, CircuitBreakerConfig config, NotificationSender fallback) {
+        this.sender = sender;
+        this.fallback = fallback;
+        this.config = config;
+        this.openDuration = config.getOpenDuration().toNanos();
+        this.window = new boolean[config.getWindowSize()];
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    @Override
+    public void send(Notification notification) throws PermanentSendException, RetryableSendException {
+        send(notification, null);
+    }
+
+    @Override
+    public void send(Notification notification, Collection<String> recipients) throws PermanentSendException, RetryableSendException {
+        State permit = acquire();
+        if (permit == State.OPEN) {
+            if (fallback == null) {
+                throw new CircuitOpenException("Circuit open, notification not sent");
+            }
+            if (recipients == null) {
+                fallback.send(notification);
+            } else {
+                fallback.send(notification, recipients);
+            }
+            return;
+        }
+
+        Boolean failure = null;
+        try {
+            if (recipients == null) {
+                sender.send(notification);
+            } else {
+                sender.send(notification, recipients);
+            }
+            failure = false;
+        } catch (PartialSendException | PermanentSendException e) {
+            // the server answered, so it is up
+            failure = false;
+            throw e;
+        } catch (RetryableSendException e) {
+            failure = true;
+            throw e;
+        } finally {
+            record(permit, failure);
+        }
+    }
+
+    @Override
+    public void close() {
+        sender.close();
+        if (fallback != null) {
+            fallback.close();
+        }
+    }
+
+    private State acquire() {
+        if (state == State.CLOSED) {
+            return State.CLOSED;
+        }
+        synchronized (lock) {
+            if (state == State.OPEN && System.nanoTime() - openedAt >= openDuration) {
+                state = State.HALF_OPEN;
+                probes = 0;
+                successes = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probes >= config.getHalfOpenCalls()) {
+                    return State.OPEN;
+                }
+                probes++;
+            }
+            return state;
+        }
+    }
+
+    private void record(State permit, Boolean failure) {
+        synchronized (lock) {
+            if (permit == State.HALF_OPEN) {
+                if (state != State.HALF_OPEN) {
+                    return;
+                }
+                if (failure == null) {
+                    // an unexpected error says nothing about the server, let another call probe it
+                    probes--;
+                } else if (failure) {
+                    open();
+                } else if (++successes >= config.getHalfOpenCalls()) {
+                    reset();
+                }
+                return;
+            }
+            // results of calls started before the circuit opened are not counted
+            if (state != State.CLOSED || failure == null) {
+                return;
+            }
+            if (window[position]) {
+                failures--;
+            }
+            window[position] = failure;
+            if (failure) {
+                failures++;
+            }
+            position = (position + 1) % window.length;
+            if (calls < window.length) {
+                calls++;
+            }
+            if (calls >= config.getMinimumCalls() && failures >= config.getFailureRate() * calls) {
+                open();
+            }
+        }
+    }
+
+    private void open() {
+        openedAt = System.nanoTime();
+        state = State.OPEN;
+    }
+
+    private void reset() {
+        for (int i = 0; i < window.length; i++) {
+            window[i] = false;
+        }
+        position = 0;
+        calls = 0;
+        failures = 0;
+        state = State.CLOSED;
+    }
+
+}
@@ -20,7 +20,10 @@ public class ConsoleSender implements NotificationSender {
                 System.out.println(notification.toString());
                 break;
             case JSON:
-                System.out.println(JsonUtils.toJson(notification, config.getPretty()));
+                synchronized (System.out) {
+                    JsonUtils.toJson(notification, System.out, config.getPretty());
+                    System.out.println();
+                }
                 break;
         }
     }
@@ -1,86 +1,87 @@
 package pl.alyx.library.notification.sender.impl;
 
+import pl.alyx.library.notification.exception.PartialSendException;
 import pl.alyx.library.notification.exception.PermanentSendException;
 import pl.alyx.library.notification.exception.RetryableSendException;
-import pl.alyx.library.notification.model.Attachment;
+import pl.alyx.library.notification.exception.SendException;
 import pl.alyx.library.notification.model.Notification;
 import pl.alyx.library.notification.sender.NotificationSender;
 import pl.alyx.library.notification.sender.config.EmailSenderConfig;
 import pl.alyx.library.notification.sender.config.MailServerConfig;
 import pl.alyx.library.notification.sender.config.MailServerSecurity;
-import pl.alyx.library.notification.utils.HtmlUtils;
+import pl.alyx.library.notification.sender.pool.PooledTransport;
+import pl.alyx.library.notification.sender.pool.RateLimiter;
+import pl.alyx.library.notification.sender.pool.TransportPool;
 
 import javax.mail.*;
 import javax.mail.internet.*;
-import java.io.File;
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import javax.mail.PasswordAuthentication;
 import java.net.ConnectException;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Properties;
 
 public class EmailSender implements NotificationSender {
 
-    private final EmailSenderConfig config;
+    private volatile TransportPool pool;
+    private volatile MailContext context;
 
     public EmailSender(EmailSenderConfig config) {
-        this.config = config;
+        MailServerConfig server = config.getServer();
+        this.context = new MailContext(config, createSession(server), RateLimiter.of(server.getRate(), server.getBurst()));
+        this.pool = new TransportPool(server, () -> context.session);
     }
 
-    @Override
-    public void send(Notification notification) throws PermanentSendException, RetryableSendException {
-        try {
-            validate(notification);
-
-            Properties properties = createProperties();
-            Authenticator authenticator = createAuthenticator();
-            Session session = Session.getInstance(properties, authenticator);
+    public synchronized void refresh(EmailSenderConfig config) {
+        MailServerConfig server = config.getServer();
+        MailContext previous = this.context;
+        MailServerConfig old = previous.config.getServer();
+        // a new limiter would start with a full burst, so it is only replaced when the rate changes
+        RateLimiter limiter = server.getRate() == old.getRate() && server.getBurst() == old.getBurst()
+                ? previous.limiter : RateLimiter.of(server.getRate(), server.getBurst());
+        this.context = new MailContext(config, createSession(server), limiter);
+        if (hasSamePoolSettings(server, old)) {
+            pool.clear();
+        } else {
+            // borrowed connections go back to the old pool, which closes them once it is closed
+            TransportPool stale = this.pool;
+            this.pool = new TransportPool(server, () -> context.session);
+            stale.close();
+        }
+    }
 
-            // Create MimeMessage
-            MimeMessage message = new MimeMessage(session);
+    @Override
+    public synchronized void close() {
+        pool.close();
+    }
 
-            // Set sender
-            String fromMail = config.getFromMail();
-            String fromName = config.getFromName();
-            if (fromName != null && !fromName.trim().isEmpty()) {
-                message.setFrom(new InternetAddress(fromMail, fromName));
-            } else {
-                message.setFrom(new InternetAddress(fromMail));
-            }
+    @Override
+    public void send(Notification notification) throws PermanentSendException, RetryableSendException {
+        send(notification, null);
+    }
 
-            // Set recipients
-            if (notification.getRecipient() != null && !notification.getRecipient().isEmpty()) {
-                message.addRecipient(Message.RecipientType.TO, new InternetAddress(notification.getRecipient()));
-            }
+    @Override
+    public void send(Notification notification, Collection<String> recipients) throws PermanentSendException, RetryableSendException {
+        try {
+            MimeMessageFactory.validate(notification);
 
-            if (notification.getCc() != null && !notification.getCc().isEmpty()) {
-                for (String cc : notification.getCc()) {
-                    message.addRecipient(Message.RecipientType.CC, new InternetAddress(cc));
-                }
-            }
+            MimeMessage message = createMessage(notification);
 
-            if (notification.getBcc() != null && !notification.getBcc().isEmpty()) {
-                for (String bcc : notification.getBcc()) {
-                    message.addRecipient(Message.RecipientType.BCC, new InternetAddress(bcc));
-                }
-            }
+            Address[] envelope = MimeMessageFactory.addRecipients(message, notification);
 
-            if (notification.getSubject() != null) {
-                message.setSubject(notification.getSubject(), "UTF-8");
-            }
+            message.saveChanges();
 
-            if (config.getReplyTo() != null) {
-                message.setReplyTo(new Address[]{new InternetAddress(config.getReplyTo())});
+            // a retry after a partial failure only goes to the recipients that were not reached
+            if (recipients != null) {
+                envelope = MimeMessageFactory.parse(recipients);
             }
-
-            Multipart content = createContent(notification);
-            message.setContent(content);
-
-            message.setSentDate(new java.util.Date());
-
-            Transport.send(message);
+            send(message, envelope);
 
         } catch (AddressException e) {
             throw new PermanentSendException("Invalid email address format", e);
@@ -88,56 +89,141 @@ public class EmailSender implements NotificationSender {
             throw new PermanentSendException("Attachment file not found: " + e.getMessage(), e);
         } catch (SecurityException e) {
             throw new PermanentSendException("Access denied to attachment file: " + e.getMessage(), e);
+        } catch (SendFailedException e) {
+            throw raise(handleSendFailedException(e));
         } catch (MessagingException e) {
-            handleMessagingException(e);
+            throw raise(handleMessagingException(e));
         } catch (IOException e) {
-            handleIOException(e);
+            throw raise(handleIOException(e));
         } catch (IllegalArgumentException e) {
             throw new PermanentSendException("Invalid notification configuration: " + e.getMessage(), e);
         }
     }
 
-    private void validate(Notification notification) throws PermanentSendException {
-        if (notification.getRecipient() == null || notification.getRecipient().trim().isEmpty()) {
-            throw new PermanentSendException("Recipient email address is required");
-        }
-
+    public PreparedEmail prepare(Notification notification) throws PermanentSendException, RetryableSendException {
         if (notification.getMessage() == null || notification.getMessage().trim().isEmpty()) {
             throw new PermanentSendException("Message content is required");
         }
 
         try {
-            new InternetAddress(notification.getRecipient(), true);
+            MimeMessage message = createMessage(notification);
+            message.saveChanges();
+
+            // recipients are set on each copy, the prototype is written without them
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            message.writeTo(out);
+            return new PreparedEmail(out.toByteArray());
+
         } catch (AddressException e) {
-            throw new PermanentSendException("Invalid recipient email address: " + notification.getRecipient(), e);
+            throw new PermanentSendException("Invalid email address format", e);
+        } catch (FileNotFoundException e) {
+            throw new PermanentSendException("Attachment file not found: " + e.getMessage(), e);
+        } catch (SecurityException e) {
+            throw new PermanentSendException("Access denied to attachment file: " + e.getMessage(), e);
+        } catch (MessagingException e) {
+            throw raise(handleMessagingException(e));
+        } catch (IOException e) {
+            throw raise(handleIOException(e));
+        } catch (IllegalArgumentException e) {
+            throw new PermanentSendException("Invalid notification configuration: " + e.getMessage(), e);
         }
+    }
 
-        if (notification.getCc() != null) {
-            for (String cc : notification.getCc()) {
-                try {
-                    new InternetAddress(cc, true);
-                } catch (AddressException e) {
-                    throw new PermanentSendException("Invalid CC email address: " + cc, e);
+    public List<String> sendBulk(PreparedEmail email, Collection<String> recipients) throws PermanentSendException, RetryableSendException {
+        List<String> pending = new ArrayList<>(recipients);
+        List<String> sent = new ArrayList<>();
+        List<String> rejected = new ArrayList<>();
+        Session session = this.context.session;
+        for (int i = 0; i < pending.size(); i++) {
+            String recipient = pending.get(i);
+            InternetAddress address;
+            try {
+                address = AddressCache.DEFAULT.parse(recipient);
+            } catch (AddressException e) {
+                rejected.add(recipient);
+                continue;
+            }
+            try {
+                BulkMimeMessage message = new BulkMimeMessage(session, email.getData());
+                message.prepare(address);
+                send(message, new Address[]{address});
+                sent.add(recipient);
+            } catch (SendFailedException e) {
+                if (e.getInvalidAddresses() != null && e.getInvalidAddresses().length > 0) {
+                    rejected.add(recipient);
+                    continue;
                 }
+                throw raise(handleBulkException(e, sent, pending.subList(i, pending.size()), rejected));
+            } catch (MessagingException e) {
+                throw raise(handleBulkException(e, sent, pending.subList(i, pending.size()), rejected));
             }
         }
+        return rejected;
+    }
+
+    // the caller always learns which recipients already got the message, a permanent
+    // failure is only reflected by isRetryable()
+    private SendException handleBulkException(MessagingException e, List<String> sent, List<String> unsent, List<String> rejected) {
+        SendException failure = handleMessagingException(e);
+        return new PartialSendException(failure.getMessage(), e, sent, unsent, rejected, failure.isRetryable());
+    }
+
+    private MimeMessage createMessage(Notification notification) throws MessagingException, IOException {
+        MailContext context = this.context;
+        return MimeMessageFactory.createMessage(context.session, context.config, notification);
+    }
 
-        if (notification.getBcc() != null) {
-            for (String bcc : notification.getBcc()) {
-                try {
-                    new InternetAddress(bcc, true);
-                } catch (AddressException e) {
-                    throw new PermanentSendException("Invalid BCC email address: " + bcc, e);
+    private void send(MimeMessage message, Address[] addresses) throws MessagingException {
+        RateLimiter limiter = context.limiter;
+        if (limiter != null) {
+            // the token is taken before borrowing, so waiting does not hold a connection
+            try {
+                limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MessagingException("Interrupted while waiting for the message rate limit", e);
+            }
+        }
+        TransportPool pool;
+        PooledTransport transport;
+        while (true) {
+            pool = this.pool;
+            try {
+                transport = pool.borrow();
+                break;
+            } catch (IllegalStateException e) {
+                // closed by refresh() after it was read, the replacement is used instead
+                if (pool == this.pool) {
+                    throw e;
                 }
             }
         }
+        boolean reusable = false;
+        try {
+            transport.send(message, addresses);
+            reusable = true;
+        } catch (SendFailedException e) {
+            // refused recipients leave the connection usable, a lost connection is reported without any addresses
+            reusable = hasAddresses(e);
+            throw e;
+        } finally {
+            pool.release(transport, reusable);
+        }
+    }
+
+    // every mapped failure is one of the two types the sender interface declares
+    private static RetryableSendException raise(SendException e) throws PermanentSendException {
+        if (e instanceof PermanentSendException) {
+            throw (PermanentSendException) e;
+        }
+        return e instanceof RetryableSendException ? (RetryableSendException) e : new RetryableSendException(e.getMessage(), e);
     }
 
-    private void handleMessagingException(MessagingException e) throws RetryableSendException, PermanentSendException {
+    private SendException handleMessagingException(MessagingException e) {
         String message = e.getMessage() != null ? e.getMessage().toLowerCase() : "";
 
         if (e instanceof AuthenticationFailedException) {
-            throw new PermanentSendException("SMTP authentication failed", e);
+            return new PermanentSendException("SMTP authentication failed", e);
         }
 
         if (message.contains("timeout") ||
@@ -148,7 +234,7 @@ public class EmailSender implements NotificationSender {
                 message.contains("try again later") ||
                 message.contains("service unavailable") ||
                 message.contains("server busy")) {
-            throw new RetryableSendException("Temporary server issue: " + e.getMessage(), e);
+            return new RetryableSendException("Temporary server issue: " + e.getMessage(), e);
         }
 
         if (message.contains("invalid recipient") ||
@@ -158,35 +244,78 @@ public class EmailSender implements NotificationSender {
                 message.contains("message too large") ||
                 message.contains("quota exceeded") ||
                 message.contains("relay access denied")) {
-            throw new PermanentSendException("Permanent delivery failure: " + e.getMessage(), e);
+            return new PermanentSendException("Permanent delivery failure: " + e.getMessage(), e);
+        }
+
+        return new RetryableSendException("SMTP communication error: " + e.getMessage(), e);
+    }
+
+    private SendException handleSendFailedException(SendFailedException e) {
+        List<String> sent = toStrings(e.getValidSentAddresses());
+        List<String> unsent = toStrings(e.getValidUnsentAddresses());
+        List<String> invalid = toStrings(e.getInvalidAddresses());
+
+        if (sent.isEmpty() && invalid.isEmpty()) {
+            return handleMessagingException(e);
         }
 
-        throw new RetryableSendException("SMTP communication error: " + e.getMessage(), e);
+        if (sent.isEmpty() && unsent.isEmpty()) {
+            return new PermanentSendException("All recipients rejected: " + e.getMessage(), e);
+        }
+
+        return new PartialSendException("Message not delivered to all recipients: " + e.getMessage(), e, sent, unsent, invalid);
+    }
+
+    private static boolean hasAddresses(SendFailedException e) {
+        return e.getValidSentAddresses() != null
+                || e.getValidUnsentAddresses() != null
+                || e.getInvalidAddresses() != null;
+    }
+
+    private static List<String> toStrings(Address[] addresses) {
+        List<String> list = new ArrayList<>();
+        if (addresses != null) {
+            for (Address address : addresses) {
+                list.add(address instanceof InternetAddress ? ((InternetAddress) address).getAddress() : address.toString());
+            }
+        }
+        return list;
     }
 
-    private void handleIOException(IOException e) throws RetryableSendException, PermanentSendException {
+    private SendException handleIOException(IOException e) {
         if (e instanceof ConnectException ||
                 e instanceof SocketTimeoutException ||
                 e instanceof UnknownHostException) {
-            throw new RetryableSendException("Network connection error: " + e.getMessage(), e);
+            return new RetryableSendException("Network connection error: " + e.getMessage(), e);
         }
 
         if (e instanceof FileNotFoundException) {
-            throw new PermanentSendException("Attachment file not found: " + e.getMessage(), e);
+            return new PermanentSendException("Attachment file not found: " + e.getMessage(), e);
         }
 
         String message = e.getMessage() != null ? e.getMessage().toLowerCase() : "";
         if (message.contains("permission denied") ||
                 message.contains("access denied") ||
                 message.contains("file not found")) {
-            throw new PermanentSendException("File access error: " + e.getMessage(), e);
+            return new PermanentSendException("File access error: " + e.getMessage(), e);
         }
 
-        throw new RetryableSendException("IO error during email sending: " + e.getMessage(), e);
+        return new RetryableSendException("IO error during email sending: " + e.getMessage(), e);
     }
 
-    private Authenticator createAuthenticator() {
-        MailServerConfig server = config.getServer();
+    private static boolean hasSamePoolSettings(MailServerConfig server, MailServerConfig old) {
+        return server.getMaxConnections() == old.getMaxConnections()
+                && server.getMaxMessages() == old.getMaxMessages()
+                && server.getIdleTimeout() == old.getIdleTimeout()
+                && server.getValidationInterval() == old.getValidationInterval()
+                && server.getTimeout() == old.getTimeout();
+    }
+
+    private static Session createSession(MailServerConfig server) {
+        return Session.getInstance(createProperties(server), createAuthenticator(server));
+    }
+
+    private static Authenticator createAuthenticator(MailServerConfig server) {
         if (server.getUser() == null || server.getPassword() == null) {
             return null;
         } else {
@@ -202,12 +331,13 @@ public class EmailSender implements NotificationSender {
         }
     }
 
-    private Properties createProperties() {
-        MailServerConfig server = config.getServer();
+    private static Properties createProperties(MailServerConfig server) {
         Properties properties = new Properties();
         properties.put("mail.transport.protocol", "smtp");
         properties.put("mail.smtp.host", server.getHost());
         properties.put("mail.smtp.port", server.getPort());
+        // deliver to accepted recipients and report the rejected ones instead of failing the whole message
+        properties.put("mail.smtp.sendpartial", "true");
         if (server.getUser() != null) {
             properties.put("mail.smtp.user", server.getUser());
         }
@@ -254,47 +384,18 @@ public class EmailSender implements NotificationSender {
         return properties;
     }
 
-    private Multipart createContent(Notification notification) throws MessagingException, IOException {
-        BodyPart textBodyPart = new MimeBodyPart();
-        textBodyPart.setContent(HtmlUtils.makeText(notification.getMessage()), "text/plain; charset=utf-8");
-
-        BodyPart htmlBodyPart = new MimeBodyPart();
-        htmlBodyPart.setContent(HtmlUtils.makeHtml(notification.getMessage()), "text/html; charset=utf-8");
-
-        Multipart multipartAlternative = new MimeMultipart("alternative");
-        multipartAlternative.addBodyPart(textBodyPart);
-        multipartAlternative.addBodyPart(htmlBodyPart);
-
-        BodyPart messagePart = new MimeBodyPart();
-        messagePart.setContent(multipartAlternative);
-
-        Multipart content = new MimeMultipart("related");
-        content.addBodyPart(messagePart);
-
-        if (notification.getAttachments() != null) {
-            for (Attachment attachment : notification.getAttachments()) {
-                MimeBodyPart attachmentBodyPart = new MimeBodyPart();
-                attachmentBodyPart.setContentID(attachment.getContentID());
-                if (attachment.getData() != null) {
-                    attachmentBodyPart.setContent(attachment.getData(),
-                            attachment.getMime() != null ? attachment.getMime() : "application/octet-stream");
-
-                    if (attachment.getFile() != null && !attachment.getFile().trim().isEmpty()) {
-                        attachmentBodyPart.setFileName(attachment.getFile());
-                        attachmentBodyPart.setDisposition(Part.ATTACHMENT);
-                    }
-                } else if (attachment.getFile() != null && !attachment.getFile().isEmpty()) {
-                    File file = new File(attachment.getFile());
-                    attachmentBodyPart.attachFile(file);
-                    attachmentBodyPart.setFileName(file.getName());
-                } else {
-                    continue;
-                }
-                content.addBodyPart(attachmentBodyPart);
-            }
+    private static final class MailContext {
+
+        private final EmailSenderConfig config;
+        private final Session session;
+        private final RateLimiter limiter;
+
+        private MailContext(EmailSenderConfig config, Session session, RateLimiter limiter) {
+            this.config = config;
+            this.session = session;
+            this.limiter = limiter;
         }
 
-        return content;
     }
 
 }
@@ -0,0 +1,202 @@
+package pl.alyx.library.notification.sender.impl;
+
+import pl.alyx.library.notification.exception.PermanentSendException;
+import pl.alyx.library.notification.model.Attachment;
+import pl.alyx.library.notification.model.Format;
+import pl.alyx.library.notification.model.Notification;
+import pl.alyx.library.notification.sender.config.EmailSenderConfig;
+import pl.alyx.library.notification.utils.HtmlUtils;
+
+import javax.activation.DataHandler;
+import javax.activation.DataSource;
+import javax.mail.*;
+import javax.mail.internet.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+final class MimeMessageFactory {
+
+    private MimeMessageFactory() {
+    }
+
+    static void validate(Notification notification) throws PermanentSendException {
+        if (notification.getRecipient() == null || notification.getRecipient().trim().isEmpty()) {
+            throw new PermanentSendException("Recipient email address is required");
+        }
+
+        if (notification.getMessage() == null || notification.getMessage().trim().isEmpty()) {
+            throw new PermanentSendException("Message content is required");
+        }
+
+        try {
+            AddressCache.DEFAULT.parse(notification.getRecipient());
+        } catch (AddressException e) {
+            throw new PermanentSendException("Invalid recipient email address: " + notification.getRecipient(), e);
+        }
+
+        if (notification.getCc() != null) {
+            for (String cc : notification.getCc()) {
+                try {
+                    AddressCache.DEFAULT.parse(cc);
+                } catch (AddressException e) {
+                    throw new PermanentSendException("Invalid CC email address: " + cc, e);
+                }
+            }
+        }
+
+        if (notification.getBcc() != null) {
+            for (String bcc : notification.getBcc()) {
+                try {
+                    AddressCache.DEFAULT.parse(bcc);
+                } catch (AddressException e) {
+                    throw new PermanentSendException("Invalid BCC email address: " + bcc, e);
+                }
+            }
+        }
+    }
+
+    static MimeMessage createMessage(Session session, EmailSenderConfig config, Notification notification) throws MessagingException, IOException {
+        // Create MimeMessage
+        MimeMessage message = new MimeMessage(session);
+
+        // Set sender
+        String fromMail = config.getFromMail();
+        String fromName = config.getFromName();
+        if (fromName != null && !fromName.trim().isEmpty()) {
+            message.setFrom(new InternetAddress(fromMail, fromName));
+        } else {
+            message.setFrom(new InternetAddress(fromMail));
+        }
+
+        if (notification.getSubject() != null) {
+            message.setSubject(notification.getSubject(), "UTF-8");
+        }
+
+        if (config.getReplyTo() != null) {
+            message.setReplyTo(new Address[]{new InternetAddress(config.getReplyTo())});
+        }
+
+        setContent(message, notification);
+
+        message.setSentDate(new java.util.Date());
+
+        return message;
+    }
+
+    static Address[] addRecipients(MimeMessage message, Notification notification) throws MessagingException {
+        List<Address> all = new ArrayList<>();
+
+        if (notification.getRecipient() != null && !notification.getRecipient().isEmpty()) {
+            InternetAddress to = AddressCache.DEFAULT.parse(notification.getRecipient());
+            message.setRecipient(Message.RecipientType.TO, to);
+            all.add(to);
+        }
+
+        // each list is set at once, adding addresses one by one parses the header again every time
+        if (notification.getCc() != null && !notification.getCc().isEmpty()) {
+            Address[] cc = parse(notification.getCc());
+            message.setRecipients(Message.RecipientType.CC, cc);
+            Collections.addAll(all, cc);
+        }
+
+        if (notification.getBcc() != null && !notification.getBcc().isEmpty()) {
+            Address[] bcc = parse(notification.getBcc());
+            message.setRecipients(Message.RecipientType.BCC, bcc);
+            Collections.addAll(all, bcc);
+        }
+
+        return all.toArray(new Address[0]);
+    }
+
+    static Address[] parse(Collection<String> addresses) throws AddressException {
+        Address[] result = new Address[addresses.size()];
+        int i = 0;
+        for (String address : addresses) {
+            result[i++] = AddressCache.DEFAULT.parse(address);
+        }
+        return result;
+    }
+
+    private static void setContent(MimeMessage mimeMessage, Notification notification) throws MessagingException, IOException {
+        String message = notification.getMessage();
+        Format format = notification.getFormat();
+        if (format == Format.AUTO) {
+            format = HtmlUtils.hasMarkup(message) ? Format.HTML : Format.TEXT;
+        }
+
+        List<BodyPart> attachments = createAttachments(notification);
+
+        Multipart content;
+        if (format == Format.TEXT) {
+            if (attachments.isEmpty()) {
+                mimeMessage.setText(message, "UTF-8");
+                return;
+            }
+
+            BodyPart textBodyPart = new MimeBodyPart();
+            textBodyPart.setContent(message, "text/plain; charset=utf-8");
+
+            content = new MimeMultipart("mixed");
+            content.addBodyPart(textBodyPart);
+        } else {
+            BodyPart textBodyPart = new MimeBodyPart();
+            textBodyPart.setContent(HtmlUtils.makeText(message), "text/plain; charset=utf-8");
+
+            BodyPart htmlBodyPart = new MimeBodyPart();
+            htmlBodyPart.setContent(HtmlUtils.makeHtml(message), "text/html; charset=utf-8");
+
+            Multipart multipartAlternative = new MimeMultipart("alternative");
+            multipartAlternative.addBodyPart(textBodyPart);
+            multipartAlternative.addBodyPart(htmlBodyPart);
+
+            BodyPart messagePart = new MimeBodyPart();
+            messagePart.setContent(multipartAlternative);
+
+            content = new MimeMultipart("related");
+            content.addBodyPart(messagePart);
+        }
+
+        for (BodyPart attachment : attachments) {
+            content.addBodyPart(attachment);
+        }
+
+        mimeMessage.setContent(content);
+    }
+
+    private static List<BodyPart> createAttachments(Notification notification) throws MessagingException, IOException {
+        if (notification.getAttachments() == null) {
+            return Collections.emptyList();
+        }
+
+        List<BodyPart> parts = new ArrayList<>();
+        for (Attachment attachment : notification.getAttachments()) {
+            MimeBodyPart attachmentBodyPart = new MimeBodyPart();
+            attachmentBodyPart.setContentID(attachment.getContentID());
+            if (attachment.hasData()) {
+                // streamed from the attachment source while the message is written
+                DataSource source = attachment.getDataSource();
+                attachmentBodyPart.setDataHandler(new DataHandler(source));
+
+                String fileName = attachment.getFile() != null && !attachment.getFile().trim().isEmpty()
+                        ? attachment.getFile() : source.getName();
+                if (fileName != null && !fileName.trim().isEmpty()) {
+                    attachmentBodyPart.setFileName(fileName);
+                    attachmentBodyPart.setDisposition(Part.ATTACHMENT);
+                }
+            } else if (attachment.getFile() != null && !attachment.getFile().isEmpty()) {
+                File file = new File(attachment.getFile());
+                attachmentBodyPart.attachFile(file);
+                attachmentBodyPart.setFileName(file.getName());
+            } else {
+                continue;
+            }
+            parts.add(attachmentBodyPart);
+        }
+        return parts;
+    }
+
+}
@@ -0,0 +1,153 @@
+package pl.alyx.library.notification.sender.impl;
+
+import pl.alyx.library.notification.exception.PartialSendException;
+import pl.alyx.library.notification.exception.PermanentSendException;
+import pl.alyx.library.notification.exception.RetryableSendException;
+import pl.alyx.library.notification.exception.SendException;
+import pl.alyx.library.notification.exception.SmtpException;
+import pl.alyx.library.notification.model.Notification;
+import pl.alyx.library.notification.sender.NotificationSender;
+import pl.alyx.library.notification.sender.config.EmailSenderConfig;
+import pl.alyx.library.notification.sender.smtp.SmtpClient;
+import pl.alyx.library.notification.sender.smtp.SmtpResult;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+public class NioEmailSender implements NotificationSender {
+
+    private static final String[] IGNORE_HEADERS = {"Bcc", "Content-Length"};
+
+    private final EmailSenderConfig config;
+    private final Session session;
+    private final SmtpClient client;
+
+    public NioEmailSender(EmailSenderConfig config) {
+        this(config, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public NioEmailSender(EmailSenderConfig config, int threads) {
+        this.config = config;
+        // only used to assemble MIME messages, the SMTP conversation is handled by the client
+        this.session = Session.getInstance(new Properties());
+        this.client = new SmtpClient(config.getServer(), threads);
+    }
+
+    @Override
+    public void send(Notification notification) throws PermanentSendException, RetryableSendException {
+        send(notification, null);
+    }
+
+    @Override
+    public void send(Notification notification, Collection<String> recipients) throws PermanentSendException, RetryableSendException {
+        try {
+            sendAsync(notification, recipients).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RetryableSendException("Interrupted while sending email", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof PermanentSendException) {
+                throw (PermanentSendException) cause;
+            }
+            if (cause instanceof RetryableSendException) {
+                throw (RetryableSendException) cause;
+            }
+            throw new RetryableSendException("Unexpected error during email sending: " + cause.getMessage(), cause);
+        }
+    }
+
+    public CompletableFuture<Void> sendAsync(Notification notification) {
+        return sendAsync(notification, null);
+    }
+
+    public CompletableFuture<Void> sendAsync(Notification notification, Collection<String> recipients) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        try {
+            MimeMessageFactory.validate(notification);
+
+            MimeMessage message = MimeMessageFactory.createMessage(session, config, notification);
+            Address[] addresses = MimeMessageFactory.addRecipients(message, notification);
+            message.saveChanges();
+
+            if (recipients != null) {
+                addresses = MimeMessageFactory.parse(recipients);
+            }
+            List<String> envelope = new ArrayList<>();
+            for (Address address : addresses) {
+                envelope.add(((InternetAddress) address).getAddress());
+            }
+            String from = new InternetAddress(config.getFromMail()).getAddress();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            message.writeTo(out, IGNORE_HEADERS);
+
+            client.send(from, envelope, out.toByteArray()).whenComplete((smtp, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(toSendException(error));
+                } else if (smtp.isComplete()) {
+                    result.complete(null);
+                } else {
+                    result.completeExceptionally(toSendException(smtp));
+                }
+            });
+
+        } catch (SendException e) {
+            result.completeExceptionally(e);
+        } catch (AddressException e) {
+            result.completeExceptionally(new PermanentSendException("Invalid email address format", e));
+        } catch (FileNotFoundException e) {
+            result.completeExceptionally(new PermanentSendException("Attachment file not found: " + e.getMessage(), e));
+        } catch (SecurityException e) {
+            result.completeExceptionally(new PermanentSendException("Access denied to attachment file: " + e.getMessage(), e));
+        } catch (MessagingException e) {
+            result.completeExceptionally(new PermanentSendException("Unable to build email message: " + e.getMessage(), e));
+        } catch (IOException e) {
+            result.completeExceptionally(new RetryableSendException("IO error during email sending: " + e.getMessage(), e));
+        } catch (IllegalArgumentException e) {
+            result.completeExceptionally(new PermanentSendException("Invalid notification configuration: " + e.getMessage(), e));
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    private static SendException toSendException(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof SmtpException && ((SmtpException) error).isPermanent()) {
+            return new PermanentSendException("Permanent delivery failure: " + error.getMessage(), error);
+        }
+        if (error instanceof SmtpException) {
+            return new RetryableSendException("Temporary server issue: " + error.getMessage(), error);
+        }
+        return new RetryableSendException("SMTP communication error: " + error.getMessage(), error);
+    }
+
+    private static SendException toSendException(SmtpResult result) {
+        if (result.getSent().isEmpty() && result.getUnsent().isEmpty()) {
+            return new PermanentSendException("All recipients rejected: " + result.getMessage());
+        }
+        return new PartialSendException("Message not delivered to all recipients: " + result.getMessage(), null,
+                result.getSent(), result.getUnsent(), result.getInvalid());
+    }
+
+}
@@ -0,0 +1,19 @@
+package pl.alyx.library.notification.sender.impl;
+
+public final class PreparedEmail {
+
+    private final byte[] data;
+
+    PreparedEmail(byte[] data) {
+        this.data = data;
+    }
+
+    public int getSize() {
+        return data.length;
+    }
+
+    byte[] getData() {
+        return data;
+    }
+
+}
@@ -0,0 +1,63 @@
+package pl.alyx.library.notification.sender.pool;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+
+public class PooledTransport {
+
+    private final Transport transport;
+    private final int generation;
+    private long lastUsed;
+    private long lastValidated;
+    private int messages;
+
+    PooledTransport(Transport transport, long now, int generation) {
+        this.transport = transport;
+        this.generation = generation;
+        this.lastUsed = now;
+        this.lastValidated = now;
+    }
+
+    public void send(Message message, Address[] addresses) throws MessagingException {
+        messages++;
+        transport.sendMessage(message, addresses);
+    }
+
+    Transport getTransport() {
+        return transport;
+    }
+
+    int getGeneration() {
+        return generation;
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    void setLastUsed(long lastUsed) {
+        this.lastUsed = lastUsed;
+    }
+
+    long getLastValidated() {
+        return lastValidated;
+    }
+
+    void setLastValidated(long lastValidated) {
+        this.lastValidated = lastValidated;
+    }
+
+    int getMessages() {
+        return messages;
+    }
+
+    void close() {
+        try {
+            transport.close();
+        } catch (MessagingException ignored) {
+        }
+    }
+
+}
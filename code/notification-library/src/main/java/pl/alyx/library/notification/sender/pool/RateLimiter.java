@@ -0,0 +1,47 @@
+package pl.alyx.library.notification.sender.pool;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class RateLimiter {
+
+    private final long interval;
+    private final long tolerance;
+    // theoretical arrival time of the next message, as in the generic cell rate algorithm
+    private final AtomicLong arrival;
+
+    public RateLimiter(double rate, int burst) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("Burst must be at least 1");
+        }
+        this.interval = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+        this.tolerance = interval * (burst - 1);
+        this.arrival = new AtomicLong(System.nanoTime());
+    }
+
+    public long reserve() {
+        while (true) {
+            long now = System.nanoTime();
+            long current = arrival.get();
+            long start = current - now > 0 ? current : now;
+            if (arrival.compareAndSet(current, start + interval)) {
+                return Math.max(0L, start - tolerance - now);
+            }
+        }
+    }
+
+    public void acquire() throws InterruptedException {
+        long wait = reserve();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    public static RateLimiter of(double rate, int burst) {
+        return rate > 0 ? new RateLimiter(rate, burst) : null;
+    }
+
+}
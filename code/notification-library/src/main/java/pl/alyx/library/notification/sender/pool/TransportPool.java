@@ -0,0 +1,173 @@
+package pl.alyx.library.notification.sender.pool;
+
+import pl.alyx.library.notification.sender.config.MailServerConfig;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+public class TransportPool implements AutoCloseable {
+
+    private static final ScheduledExecutorService EVICTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "transport-pool-evictor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Supplier<Session> sessions;
+    private final int maxConnections;
+    private final int maxMessages;
+    private final long idleTimeout;
+    private final long validationInterval;
+    private final long borrowTimeout;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+    private final ScheduledFuture<?> eviction;
+    private volatile int generation;
+    private volatile boolean closed;
+
+    public TransportPool(MailServerConfig server, Supplier<Session> sessions) {
+        this.sessions = sessions;
+        this.maxConnections = server.getMaxConnections();
+        this.maxMessages = server.getMaxMessages();
+        this.idleTimeout = TimeUnit.SECONDS.toNanos(server.getIdleTimeout());
+        this.validationInterval = TimeUnit.SECONDS.toNanos(server.getValidationInterval());
+        int timeout = server.getTimeout() == 0 ? 30 : server.getTimeout();
+        this.borrowTimeout = timeout < 0 ? Long.MAX_VALUE : TimeUnit.SECONDS.toNanos(timeout);
+        this.permits = maxConnections > 0 ? new Semaphore(maxConnections, true) : null;
+        if (maxConnections > 0 && idleTimeout > 0) {
+            long period = Math.max(TimeUnit.SECONDS.toNanos(1), idleTimeout / 2);
+            this.eviction = EVICTOR.scheduleWithFixedDelay(this::evict, period, period, TimeUnit.NANOSECONDS);
+        } else {
+            this.eviction = null;
+        }
+    }
+
+    public PooledTransport borrow() throws MessagingException {
+        if (closed) {
+            throw new IllegalStateException("Transport pool is closed");
+        }
+        if (permits == null) {
+            return open();
+        }
+        acquire();
+        try {
+            PooledTransport pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (isUsable(pooled)) {
+                    return pooled;
+                }
+                pooled.close();
+            }
+            return open();
+        } catch (MessagingException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public void release(PooledTransport pooled, boolean reusable) {
+        if (permits == null) {
+            pooled.close();
+            return;
+        }
+        try {
+            if (reusable && !closed && !isExhausted(pooled) && pooled.getGeneration() == generation) {
+                long now = System.nanoTime();
+                pooled.setLastUsed(now);
+                pooled.setLastValidated(now);
+                idle.offerFirst(pooled);
+                if (closed && idle.remove(pooled)) {
+                    pooled.close();
+                }
+            } else {
+                pooled.close();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            pooled.close();
+        }
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (eviction != null) {
+            eviction.cancel(false);
+        }
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            pooled.close();
+        }
+    }
+
+    private void acquire() throws MessagingException {
+        try {
+            if (!permits.tryAcquire(borrowTimeout, TimeUnit.NANOSECONDS)) {
+                throw new MessagingException("Timeout waiting for SMTP connection from pool");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for SMTP connection from pool", e);
+        }
+    }
+
+    private PooledTransport open() throws MessagingException {
+        int generation = this.generation;
+        Transport transport = sessions.get().getTransport();
+        transport.connect();
+        return new PooledTransport(transport, System.nanoTime(), generation);
+    }
+
+    private boolean isExhausted(PooledTransport pooled) {
+        return maxMessages > 0 && pooled.getMessages() >= maxMessages;
+    }
+
+    private boolean isExpired(PooledTransport pooled, long now) {
+        return idleTimeout > 0 && now - pooled.getLastUsed() >= idleTimeout;
+    }
+
+    private boolean isUsable(PooledTransport pooled) {
+        long now = System.nanoTime();
+        if (pooled.getGeneration() != generation || isExpired(pooled, now) || isExhausted(pooled)) {
+            return false;
+        }
+        if (now - pooled.getLastValidated() < validationInterval) {
+            return true;
+        }
+        // SMTPTransport.isConnected() issues NOOP and checks the reply
+        if (!pooled.getTransport().isConnected()) {
+            return false;
+        }
+        pooled.setLastValidated(now);
+        return true;
+    }
+
+    private void evict() {
+        long now = System.nanoTime();
+        for (PooledTransport pooled : idle) {
+            if (isExpired(pooled, now) && idle.remove(pooled)) {
+                pooled.close();
+            }
+        }
+    }
+
+}
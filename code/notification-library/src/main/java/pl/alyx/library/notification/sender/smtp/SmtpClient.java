@@ -0,0 +1,319 @@
+package pl.alyx.library.notification.sender.smtp;
+
+import pl.alyx.library.notification.exception.SmtpException;
+import pl.alyx.library.notification.sender.config.MailServerConfig;
+import pl.alyx.library.notification.sender.config.MailServerSecurity;
+import pl.alyx.library.notification.sender.pool.RateLimiter;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SmtpClient implements AutoCloseable {
+
+    private final MailServerConfig server;
+    private final SmtpEventLoop[] loops;
+    private final AtomicInteger next = new AtomicInteger();
+    private final String localHost;
+    private final boolean trustAll;
+    private final SSLContext context;
+    private final int timeout;
+    private final int connectionTimeout;
+    private final RateLimiter limiter;
+
+    private final Object lock = new Object();
+    private final Deque<SmtpSession> idle = new ArrayDeque<>();
+    private final Queue<SmtpTransaction> pending = new ArrayDeque<>();
+    private int sessions;
+    private boolean closed;
+
+    public SmtpClient(MailServerConfig server, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+        this.server = server;
+        this.timeout = server.getTimeout() == 0 ? 30 : server.getTimeout();
+        this.connectionTimeout = server.getConnectionTimeout() == 0 ? timeout : server.getConnectionTimeout();
+        this.limiter = RateLimiter.of(server.getRate(), server.getBurst());
+        this.localHost = resolveLocalHost();
+        this.trustAll = isTrusted(server);
+        this.context = server.getSecurity() == MailServerSecurity.NONE ? null : createContext(trustAll);
+        this.loops = new SmtpEventLoop[threads];
+        try {
+            for (int i = 0; i < threads; i++) {
+                loops[i] = new SmtpEventLoop("notification-smtp-" + (i + 1));
+            }
+        } catch (IOException e) {
+            for (SmtpEventLoop loop : loops) {
+                if (loop != null) {
+                    loop.close(0L, TimeUnit.MILLISECONDS);
+                }
+            }
+            throw new UncheckedIOException("Unable to open selector", e);
+        }
+    }
+
+    public CompletableFuture<SmtpResult> send(String from, Collection<String> recipients, byte[] content) {
+        if (recipients.isEmpty()) {
+            throw new IllegalArgumentException("At least one recipient is required");
+        }
+        List<String> list = new ArrayList<>(recipients);
+        checkAddress(from);
+        for (String recipient : list) {
+            checkAddress(recipient);
+        }
+        SmtpTransaction transaction = new SmtpTransaction(from, list, SmtpTransaction.encode(content));
+        long wait = limiter == null ? 0L : limiter.reserve();
+        if (wait > 0) {
+            // throttled messages wait on a loop timer instead of blocking the caller
+            SmtpEventLoop loop = loops[Math.floorMod(next.getAndIncrement(), loops.length)];
+            loop.schedule(() -> dispatch(transaction), wait, TimeUnit.NANOSECONDS);
+        } else {
+            dispatch(transaction);
+        }
+        return transaction.future;
+    }
+
+    public int getSessionCount() {
+        synchronized (lock) {
+            return sessions;
+        }
+    }
+
+    public int getIdleCount() {
+        synchronized (lock) {
+            return idle.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        List<SmtpSession> sessions;
+        List<SmtpTransaction> transactions;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            sessions = new ArrayList<>(idle);
+            idle.clear();
+            transactions = new ArrayList<>(pending);
+            pending.clear();
+        }
+        for (SmtpTransaction transaction : transactions) {
+            transaction.future.completeExceptionally(new SmtpException("SMTP client closed", false));
+        }
+        for (SmtpSession session : sessions) {
+            session.getLoop().execute(session::quit);
+        }
+        // running transactions are given the server timeout to finish
+        long wait = TimeUnit.SECONDS.toNanos(timeout > 0 ? timeout : 30);
+        long end = System.nanoTime() + wait;
+        synchronized (lock) {
+            long remaining;
+            while (this.sessions > 0 && (remaining = end - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        for (SmtpEventLoop loop : loops) {
+            loop.close(1L, TimeUnit.SECONDS);
+        }
+    }
+
+    void dispatch(SmtpTransaction transaction) {
+        SmtpSession session;
+        boolean open = false;
+        synchronized (lock) {
+            if (closed) {
+                transaction.future.completeExceptionally(new SmtpException("SMTP client closed", false));
+                return;
+            }
+            session = idle.pollFirst();
+            if (session == null) {
+                if (server.getMaxConnections() > 0 && sessions >= server.getMaxConnections()) {
+                    pending.add(transaction);
+                    return;
+                }
+                sessions++;
+                open = true;
+            }
+        }
+        if (open) {
+            SmtpEventLoop loop = loops[Math.floorMod(next.getAndIncrement(), loops.length)];
+            SmtpSession created = new SmtpSession(this, loop);
+            InetSocketAddress address = new InetSocketAddress(server.getHost(), server.getPort());
+            loop.execute(() -> created.open(address, transaction));
+        } else {
+            SmtpSession reused = session;
+            reused.getLoop().execute(() -> reused.start(transaction));
+        }
+    }
+
+    SmtpTransaction release(SmtpSession session) {
+        synchronized (lock) {
+            if (closed) {
+                session.getLoop().execute(session::quit);
+                return null;
+            }
+            SmtpTransaction transaction = pending.poll();
+            if (transaction == null) {
+                idle.offerFirst(session);
+            }
+            return transaction;
+        }
+    }
+
+    boolean evict(SmtpSession session) {
+        synchronized (lock) {
+            return idle.remove(session);
+        }
+    }
+
+    void closed(SmtpSession session) {
+        SmtpTransaction transaction;
+        synchronized (lock) {
+            sessions--;
+            idle.remove(session);
+            transaction = closed ? null : pending.poll();
+            lock.notifyAll();
+        }
+        if (transaction != null) {
+            dispatch(transaction);
+        }
+    }
+
+    SSLEngine createEngine() {
+        SSLEngine engine = context.createSSLEngine(server.getHost(), server.getPort());
+        engine.setUseClientMode(true);
+        if (!server.getInsecure() && !trustAll) {
+            SSLParameters parameters = engine.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            engine.setSSLParameters(parameters);
+        }
+        return engine;
+    }
+
+    boolean isImplicitTls() {
+        return server.getSecurity() == MailServerSecurity.SSL;
+    }
+
+    boolean isStartTls() {
+        return server.getSecurity() == MailServerSecurity.TLS;
+    }
+
+    boolean isInsecure() {
+        return server.getInsecure();
+    }
+
+    boolean isReusable() {
+        return server.getMaxConnections() > 0;
+    }
+
+    boolean isExhausted(int messages) {
+        return server.getMaxMessages() > 0 && messages >= server.getMaxMessages();
+    }
+
+    String getUser() {
+        return server.getUser();
+    }
+
+    String getPassword() {
+        return server.getPassword();
+    }
+
+    String getLocalHost() {
+        return localHost;
+    }
+
+    int getTimeout() {
+        return timeout;
+    }
+
+    int getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    int getIdleTimeout() {
+        return server.getIdleTimeout();
+    }
+
+    private static void checkAddress(String address) {
+        if (address == null || address.isEmpty()) {
+            throw new IllegalArgumentException("Address must not be empty");
+        }
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            if (c == '\r' || c == '\n' || c == '<' || c == '>') {
+                throw new IllegalArgumentException("Invalid character in address: " + address);
+            }
+        }
+    }
+
+    private static boolean isTrusted(MailServerConfig server) {
+        if (server.getTrust() == null) {
+            return server.getInsecure();
+        }
+        List<String> hosts = Arrays.asList(server.getTrust().trim().split("\\s+"));
+        return hosts.contains("*") || hosts.contains(server.getHost());
+    }
+
+    private static SSLContext createContext(boolean trustAll) {
+        try {
+            if (!trustAll) {
+                return SSLContext.getDefault();
+            }
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, new TrustManager[]{new X509TrustManager() {
+                @Override
+                public void checkClientTrusted(X509Certificate[] chain, String authType) {
+                }
+
+                @Override
+                public void checkServerTrusted(X509Certificate[] chain, String authType) {
+                }
+
+                @Override
+                public X509Certificate[] getAcceptedIssuers() {
+                    return new X509Certificate[0];
+                }
+            }}, null);
+            return context;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to initialize TLS", e);
+        }
+    }
+
+    private static String resolveLocalHost() {
+        try {
+            String name = InetAddress.getLocalHost().getCanonicalHostName();
+            return name == null || name.isEmpty() ? "localhost" : name;
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+
+}
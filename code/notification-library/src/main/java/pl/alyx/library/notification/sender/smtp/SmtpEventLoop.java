@@ -0,0 +1,157 @@
+package pl.alyx.library.notification.sender.smtp;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+final class SmtpEventLoop implements Runnable {
+
+    private static final long SELECT_TIMEOUT = 100L;
+    private static final long TIMEOUT_SCAN_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // only touched on the loop thread
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>();
+    private long sequence;
+    private volatile boolean running = true;
+    private long lastScan;
+
+    SmtpEventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    void schedule(Runnable task, long delay, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(delay);
+        execute(() -> timers.add(new Timer(deadline, sequence++, task)));
+    }
+
+    SelectionKey register(SocketChannel channel, SmtpSession session, int ops) throws ClosedChannelException {
+        return channel.register(selector, ops, session);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select(selectTimeout());
+            } catch (IOException e) {
+                break;
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (key.isValid()) {
+                    ((SmtpSession) key.attachment()).handle(key);
+                }
+            }
+            runTasks();
+            long now = System.nanoTime();
+            runTimers(now);
+            if (now - lastScan >= TIMEOUT_SCAN_INTERVAL) {
+                lastScan = now;
+                for (SelectionKey key : new ArrayList<>(selector.keys())) {
+                    if (key.isValid()) {
+                        ((SmtpSession) key.attachment()).checkTimeout(now);
+                    }
+                }
+            }
+        }
+        runTasks();
+        // pending timers are run so that their work sees the closed loop and fails fast
+        while (!timers.isEmpty()) {
+            run(timers.poll().task);
+        }
+        for (SelectionKey key : new ArrayList<>(selector.keys())) {
+            ((SmtpSession) key.attachment()).abort();
+        }
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    void close(long timeout, TimeUnit unit) {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(unit.toMillis(timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long selectTimeout() {
+        Timer timer = timers.peek();
+        if (timer == null) {
+            return SELECT_TIMEOUT;
+        }
+        long remaining = timer.deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return 1L;
+        }
+        return Math.min(SELECT_TIMEOUT, Math.max(1L, TimeUnit.NANOSECONDS.toMillis(remaining + 999_999L)));
+    }
+
+    private void runTimers(long now) {
+        Timer timer;
+        while ((timer = timers.peek()) != null && timer.deadline - now <= 0) {
+            timers.poll();
+            run(timer.task);
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            run(task);
+        }
+    }
+
+    private static void run(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException ignored) {
+            // sessions report their own failures, a broken task must not stop the loop
+        }
+    }
+
+    private static final class Timer implements Comparable<Timer> {
+
+        private final long deadline;
+        private final long sequence;
+        private final Runnable task;
+
+        private Timer(long deadline, long sequence, Runnable task) {
+            this.deadline = deadline;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(Timer other) {
+            int result = Long.compare(deadline - other.deadline, 0L);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+
+    }
+
+}
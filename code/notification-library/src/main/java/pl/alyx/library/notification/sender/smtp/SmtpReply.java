@@ -0,0 +1,36 @@
+package pl.alyx.library.notification.sender.smtp;
+
+import java.util.List;
+
+final class SmtpReply {
+
+    private final int code;
+    private final List<String> lines;
+
+    SmtpReply(int code, List<String> lines) {
+        this.code = code;
+        this.lines = lines;
+    }
+
+    int getCode() {
+        return code;
+    }
+
+    List<String> getLines() {
+        return lines;
+    }
+
+    boolean isPositive() {
+        return code >= 200 && code < 300;
+    }
+
+    boolean isTransient() {
+        return code >= 400 && code < 500;
+    }
+
+    @Override
+    public String toString() {
+        return code + " " + String.join(" ", lines);
+    }
+
+}
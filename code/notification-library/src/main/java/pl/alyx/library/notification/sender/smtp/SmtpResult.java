@@ -0,0 +1,40 @@
+package pl.alyx.library.notification.sender.smtp;
+
+import java.util.Collections;
+import java.util.List;
+
+public final class SmtpResult {
+
+    private final List<String> sent;
+    private final List<String> unsent;
+    private final List<String> invalid;
+    private final String message;
+
+    SmtpResult(List<String> sent, List<String> unsent, List<String> invalid, String message) {
+        this.sent = Collections.unmodifiableList(sent);
+        this.unsent = Collections.unmodifiableList(unsent);
+        this.invalid = Collections.unmodifiableList(invalid);
+        this.message = message;
+    }
+
+    public List<String> getSent() {
+        return sent;
+    }
+
+    public List<String> getUnsent() {
+        return unsent;
+    }
+
+    public List<String> getInvalid() {
+        return invalid;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isComplete() {
+        return unsent.isEmpty() && invalid.isEmpty();
+    }
+
+}
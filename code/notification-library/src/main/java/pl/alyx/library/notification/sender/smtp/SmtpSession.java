@@ -0,0 +1,608 @@
+package pl.alyx.library.notification.sender.smtp;
+
+import pl.alyx.library.notification.exception.SmtpException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+
+final class SmtpSession {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private enum State {
+        CONNECTING,
+        HANDSHAKE,
+        GREETING,
+        EHLO,
+        HELO,
+        STARTTLS,
+        AUTH,
+        READY,
+        TRANSACTION,
+        DATA,
+        RSET,
+        QUIT,
+        CLOSED,
+    }
+
+    private final SmtpClient client;
+    private final SmtpEventLoop loop;
+    private final Queue<ByteBuffer> out = new ArrayDeque<>();
+    private final List<String> lines = new ArrayList<>();
+
+    private SocketChannel channel;
+    private SelectionKey key;
+    private TlsLayer tls;
+    private ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+    private State state = State.CONNECTING;
+    private long deadline;
+    private boolean upgrade;
+
+    private boolean pipelining;
+    private boolean startTls;
+    private Set<String> mechanisms = Collections.emptySet();
+    private String mechanism;
+    private int authStep;
+
+    private SmtpTransaction transaction;
+    private Runnable completion;
+    private int messages;
+
+    SmtpSession(SmtpClient client, SmtpEventLoop loop) {
+        this.client = client;
+        this.loop = loop;
+    }
+
+    SmtpEventLoop getLoop() {
+        return loop;
+    }
+
+    void open(InetSocketAddress address, SmtpTransaction transaction) {
+        this.transaction = transaction;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            setDeadline(client.getConnectionTimeout());
+            if (channel.connect(address)) {
+                key = loop.register(channel, this, SelectionKey.OP_READ);
+                connected();
+            } else {
+                key = loop.register(channel, this, SelectionKey.OP_CONNECT);
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    void start(SmtpTransaction transaction) {
+        if (state != State.READY) {
+            // the connection was lost while the transaction was handed over
+            client.dispatch(transaction);
+            return;
+        }
+        this.transaction = transaction;
+        try {
+            begin();
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    void handle(SelectionKey key) {
+        try {
+            if (key.isConnectable()) {
+                channel.finishConnect();
+                connected();
+                return;
+            }
+            if (state == State.HANDSHAKE) {
+                handshake();
+                return;
+            }
+            if (key.isWritable()) {
+                flush();
+            }
+            if (key.isValid() && key.isReadable()) {
+                read();
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    void checkTimeout(long now) {
+        if (deadline == 0L || now - deadline < 0L) {
+            return;
+        }
+        deadline = 0L;
+        if (state == State.READY) {
+            if (client.evict(this)) {
+                quit();
+            }
+        } else if (state == State.QUIT) {
+            close();
+        } else {
+            fail(new SmtpException(state == State.CONNECTING
+                    ? "Timeout connecting to SMTP server" : "Timeout waiting for SMTP server response", false));
+        }
+    }
+
+    void quit() {
+        if (state == State.CLOSED) {
+            return;
+        }
+        state = State.QUIT;
+        try {
+            command("QUIT");
+            setDeadline(client.getTimeout());
+        } catch (IOException | RuntimeException e) {
+            close();
+        }
+    }
+
+    void abort() {
+        fail(new SmtpException("SMTP client closed", false));
+    }
+
+    private void connected() throws IOException {
+        key.interestOps(SelectionKey.OP_READ);
+        if (client.isImplicitTls()) {
+            startTls();
+        } else {
+            state = State.GREETING;
+            setDeadline(client.getTimeout());
+        }
+    }
+
+    private void startTls() throws IOException {
+        tls = new TlsLayer(channel, client.createEngine());
+        if (in.capacity() < tls.getApplicationBufferSize()) {
+            in = ByteBuffer.allocate(tls.getApplicationBufferSize());
+        }
+        state = State.HANDSHAKE;
+        setDeadline(client.getTimeout());
+        tls.begin();
+        handshake();
+    }
+
+    private void handshake() throws IOException {
+        if (!tls.handshake(in)) {
+            key.interestOps(tls.hasPendingOutput() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            return;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        setDeadline(client.getTimeout());
+        if (client.isImplicitTls()) {
+            state = State.GREETING;
+            // the greeting may have arrived together with the last handshake message
+            process();
+        } else {
+            ehlo();
+        }
+    }
+
+    private void read() throws IOException {
+        int count = tls != null ? tls.read(in) : channel.read(in);
+        if (count < 0) {
+            throw new EOFException("Connection closed by SMTP server");
+        }
+        if (count > 0) {
+            process();
+        }
+    }
+
+    private void process() throws IOException {
+        in.flip();
+        try {
+            String line;
+            while (state != State.CLOSED && !upgrade && (line = nextLine()) != null) {
+                line(line);
+            }
+            if (!upgrade && in.remaining() == in.capacity()) {
+                throw new SmtpException("SMTP reply line too long", false);
+            }
+        } finally {
+            in.compact();
+        }
+        if (upgrade) {
+            // anything received after the STARTTLS reply was sent in plain text and is dropped
+            upgrade = false;
+            in.clear();
+            startTls();
+        }
+    }
+
+    private String nextLine() {
+        int start = in.position();
+        for (int i = start; i < in.limit(); i++) {
+            if (in.get(i) == '\n') {
+                int end = i > start && in.get(i - 1) == '\r' ? i - 1 : i;
+                byte[] bytes = new byte[end - start];
+                in.get(bytes);
+                in.position(i + 1);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private void line(String line) throws IOException {
+        if (line.length() < 3 || !Character.isDigit(line.charAt(0))
+                || !Character.isDigit(line.charAt(1)) || !Character.isDigit(line.charAt(2))) {
+            throw new SmtpException("Malformed SMTP reply: " + line, false);
+        }
+        lines.add(line.length() > 4 ? line.substring(4) : "");
+        if (line.length() > 3 && line.charAt(3) == '-') {
+            return;
+        }
+        SmtpReply reply = new SmtpReply(Integer.parseInt(line.substring(0, 3)), new ArrayList<>(lines));
+        lines.clear();
+        setDeadline(client.getTimeout());
+        reply(reply);
+    }
+
+    private void reply(SmtpReply reply) throws IOException {
+        if (reply.getCode() == 421 && state != State.QUIT) {
+            // the server is shutting the connection down
+            fail(new SmtpException(reply.getCode(), reply.toString()));
+            return;
+        }
+        switch (state) {
+            case GREETING:
+                expect(reply);
+                ehlo();
+                break;
+            case EHLO:
+                if (reply.isPositive()) {
+                    capabilities(reply);
+                    secure();
+                } else if (!reply.isTransient()) {
+                    state = State.HELO;
+                    command("HELO " + client.getLocalHost());
+                } else {
+                    expect(reply);
+                }
+                break;
+            case HELO:
+                expect(reply);
+                pipelining = false;
+                startTls = false;
+                mechanisms = Collections.emptySet();
+                secure();
+                break;
+            case STARTTLS:
+                if (reply.getCode() == 220) {
+                    upgrade = true;
+                } else if (client.isInsecure()) {
+                    authenticate();
+                } else {
+                    expect(reply);
+                }
+                break;
+            case AUTH:
+                authenticate(reply);
+                break;
+            case TRANSACTION:
+            case DATA:
+                transaction(reply);
+                break;
+            case RSET:
+                expect(reply);
+                idle();
+                complete();
+                break;
+            case QUIT:
+                close();
+                break;
+            default:
+                // unsolicited reply on an idle connection
+                close();
+                break;
+        }
+    }
+
+    private void expect(SmtpReply reply) throws SmtpException {
+        if (!reply.isPositive()) {
+            throw new SmtpException(reply.getCode(), reply.toString());
+        }
+    }
+
+    private void ehlo() throws IOException {
+        state = State.EHLO;
+        command("EHLO " + client.getLocalHost());
+    }
+
+    private void capabilities(SmtpReply reply) {
+        pipelining = false;
+        startTls = false;
+        mechanisms = Collections.emptySet();
+        List<String> lines = reply.getLines();
+        for (int i = 1; i < lines.size(); i++) {
+            String[] words = lines.get(i).toUpperCase(Locale.ROOT).split("[\\s=]+");
+            switch (words[0]) {
+                case "PIPELINING":
+                    pipelining = true;
+                    break;
+                case "STARTTLS":
+                    startTls = true;
+                    break;
+                case "AUTH":
+                    Set<String> set = new HashSet<>(mechanisms);
+                    for (int j = 1; j < words.length; j++) {
+                        set.add(words[j]);
+                    }
+                    mechanisms = set;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void secure() throws IOException {
+        if (!client.isStartTls() || tls != null) {
+            authenticate();
+        } else if (startTls) {
+            state = State.STARTTLS;
+            command("STARTTLS");
+        } else if (client.isInsecure()) {
+            authenticate();
+        } else {
+            throw new SmtpException("SMTP server does not support STARTTLS", true);
+        }
+    }
+
+    private void authenticate() throws IOException {
+        if (client.getUser() == null || client.getPassword() == null) {
+            ready();
+            return;
+        }
+        state = State.AUTH;
+        authStep = 0;
+        if (mechanisms.contains("PLAIN")) {
+            mechanism = "PLAIN";
+            String token = "\0" + client.getUser() + "\0" + client.getPassword();
+            command("AUTH PLAIN " + base64(token));
+        } else if (mechanisms.contains("LOGIN")) {
+            mechanism = "LOGIN";
+            command("AUTH LOGIN");
+        } else {
+            throw new SmtpException("No supported SMTP authentication mechanism", true);
+        }
+    }
+
+    private void authenticate(SmtpReply reply) throws IOException {
+        if (reply.getCode() == 235) {
+            ready();
+            return;
+        }
+        if (reply.getCode() == 334 && "LOGIN".equals(mechanism) && authStep < 2) {
+            command(base64(authStep++ == 0 ? client.getUser() : client.getPassword()));
+            return;
+        }
+        if (reply.getCode() == 334) {
+            // cancel an exchange we cannot continue
+            command("*");
+            return;
+        }
+        throw new SmtpException(reply.getCode(), "SMTP authentication failed: " + reply);
+    }
+
+    private void ready() throws IOException {
+        if (transaction != null) {
+            begin();
+        } else {
+            idle();
+        }
+    }
+
+    private void begin() throws IOException {
+        SmtpTransaction t = transaction;
+        t.reset();
+        state = State.TRANSACTION;
+        setDeadline(client.getTimeout());
+        if (pipelining) {
+            write(t.commands(0, t.recipients.size() + 1));
+        } else {
+            write(t.commands(0, 0));
+        }
+    }
+
+    private void transaction(SmtpReply reply) throws IOException {
+        SmtpTransaction t = transaction;
+        int count = t.recipients.size();
+        if (t.step == 0) {
+            if (!reply.isPositive()) {
+                t.failure = reply;
+            }
+        } else if (t.step <= count) {
+            String recipient = t.recipients.get(t.step - 1);
+            if (reply.isPositive()) {
+                t.accepted.add(recipient);
+            } else {
+                if (reply.isTransient()) {
+                    t.unsent.add(recipient);
+                } else {
+                    t.invalid.add(recipient);
+                }
+                if (t.rejection == null) {
+                    t.rejection = reply;
+                }
+            }
+        } else if (t.step == count + 1) {
+            if (reply.getCode() == 354) {
+                state = State.DATA;
+                t.step++;
+                if (t.failure != null || t.accepted.isEmpty()) {
+                    write(ByteBuffer.wrap(".\r\n".getBytes(StandardCharsets.US_ASCII)));
+                } else {
+                    write(ByteBuffer.wrap(t.data));
+                }
+                return;
+            }
+            if (t.failure == null && !t.accepted.isEmpty()) {
+                t.failure = reply;
+            }
+            finish(true);
+            return;
+        } else {
+            if (t.failure == null && !t.accepted.isEmpty() && !reply.isPositive()) {
+                t.failure = reply;
+            }
+            finish(false);
+            return;
+        }
+        t.step++;
+        if (!pipelining) {
+            if (t.step == 1 && t.failure != null) {
+                finish(true);
+            } else if (t.step == count + 1 && t.accepted.isEmpty()) {
+                finish(true);
+            } else {
+                write(t.commands(t.step, t.step));
+            }
+        }
+    }
+
+    private void finish(boolean reset) throws IOException {
+        SmtpTransaction t = transaction;
+        transaction = null;
+        messages++;
+        if (t.failure != null) {
+            SmtpException failure = new SmtpException(t.failure.getCode(), t.failure.toString());
+            completion = () -> t.future.completeExceptionally(failure);
+        } else {
+            SmtpResult result = new SmtpResult(new ArrayList<>(t.accepted), new ArrayList<>(t.unsent),
+                    new ArrayList<>(t.invalid), t.rejection == null ? null : t.rejection.toString());
+            completion = () -> t.future.complete(result);
+        }
+        // the outcome is published only once the session is back in the pool (or gone),
+        // so a send chained on the future finds the connection instead of opening another
+        if (reset) {
+            state = State.RSET;
+            command("RSET");
+        } else {
+            idle();
+            complete();
+        }
+    }
+
+    private void complete() {
+        Runnable completion = this.completion;
+        this.completion = null;
+        if (completion != null) {
+            completion.run();
+        }
+    }
+
+    private void idle() throws IOException {
+        if (!client.isReusable() || client.isExhausted(messages)) {
+            quit();
+            return;
+        }
+        state = State.READY;
+        setDeadline(client.getIdleTimeout());
+        SmtpTransaction next = client.release(this);
+        if (next != null) {
+            transaction = next;
+            begin();
+        }
+    }
+
+    private void command(String command) throws IOException {
+        write(ByteBuffer.wrap((command + "\r\n").getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        out.add(buffer);
+        flush();
+    }
+
+    private void flush() throws IOException {
+        ByteBuffer buffer;
+        while ((buffer = out.peek()) != null) {
+            int count = tls != null ? tls.write(buffer) : channel.write(buffer);
+            if (count > 0 && state != State.READY) {
+                setDeadline(client.getTimeout());
+            }
+            if (buffer.hasRemaining()) {
+                break;
+            }
+            out.poll();
+        }
+        if (out.isEmpty() && tls != null) {
+            tls.flush();
+        }
+        boolean pending = !out.isEmpty() || (tls != null && tls.hasPendingOutput());
+        key.interestOps(pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    private void fail(Throwable cause) {
+        if (state == State.CLOSED) {
+            return;
+        }
+        SmtpTransaction t = transaction;
+        transaction = null;
+        boolean reused = messages > 0;
+        close();
+        if (t == null) {
+            return;
+        }
+        if (reused && t.step == 0 && !t.retried && !(cause instanceof SmtpException)) {
+            // a pooled connection was dropped before the transaction got a reply, try it on a fresh one
+            t.retried = true;
+            client.dispatch(t);
+        } else if (cause instanceof SmtpException) {
+            t.future.completeExceptionally(cause);
+        } else {
+            t.future.completeExceptionally(new SmtpException("SMTP connection error: " + cause.getMessage(), cause));
+        }
+    }
+
+    private void close() {
+        if (state == State.CLOSED) {
+            return;
+        }
+        state = State.CLOSED;
+        deadline = 0L;
+        if (key != null) {
+            key.cancel();
+        }
+        if (tls != null) {
+            tls.close();
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+        client.closed(this);
+        complete();
+    }
+
+    private void setDeadline(int seconds) {
+        deadline = seconds > 0 ? System.nanoTime() + seconds * 1_000_000_000L : 0L;
+    }
+
+    private static String base64(String value) {
+        return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
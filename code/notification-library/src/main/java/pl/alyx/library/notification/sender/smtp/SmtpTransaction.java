@@ -0,0 +1,120 @@
+package pl.alyx.library.notification.sender.smtp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+final class SmtpTransaction {
+
+    final String from;
+    final List<String> recipients;
+    final byte[] data;
+    final CompletableFuture<SmtpResult> future = new CompletableFuture<>();
+
+    final List<String> accepted = new ArrayList<>();
+    final List<String> unsent = new ArrayList<>();
+    final List<String> invalid = new ArrayList<>();
+    SmtpReply failure;
+    SmtpReply rejection;
+    int step;
+    boolean retried;
+
+    SmtpTransaction(String from, List<String> recipients, byte[] data) {
+        this.from = from;
+        this.recipients = recipients;
+        this.data = data;
+    }
+
+    void reset() {
+        accepted.clear();
+        unsent.clear();
+        invalid.clear();
+        failure = null;
+        rejection = null;
+        step = 0;
+    }
+
+    String command(int step) {
+        if (step == 0) {
+            return "MAIL FROM:<" + from + ">\r\n";
+        }
+        if (step <= recipients.size()) {
+            return "RCPT TO:<" + recipients.get(step - 1) + ">\r\n";
+        }
+        return "DATA\r\n";
+    }
+
+    ByteBuffer commands(int from, int to) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = from; i <= to; i++) {
+            builder.append(command(i));
+        }
+        return ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // normalizes line endings to CRLF, dot-stuffs lines and appends the terminating "."
+    static byte[] encode(byte[] content) {
+        ByteOutput out = new ByteOutput(content.length + content.length / 64 + 8);
+        boolean lineStart = true;
+        int prev = -1;
+        for (byte b : content) {
+            if (prev == '\r' && b != '\n') {
+                out.write('\n');
+                lineStart = true;
+            }
+            if (b == '\n' && prev != '\r') {
+                out.write('\r');
+            }
+            if (lineStart && b == '.') {
+                out.write('.');
+            }
+            out.write(b);
+            lineStart = b == '\n';
+            prev = b;
+        }
+        if (prev == '\r') {
+            out.write('\n');
+            lineStart = true;
+        }
+        if (!lineStart) {
+            out.write('\r');
+            out.write('\n');
+        }
+        out.write('.');
+        out.write('\r');
+        out.write('\n');
+        return out.toByteArray();
+    }
+
+    private static final class ByteOutput {
+
+        private byte[] buffer;
+        private int count;
+
+        private ByteOutput(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        private void write(int b) {
+            if (count == buffer.length) {
+                byte[] grown = new byte[buffer.length + (buffer.length >> 1) + 16];
+                System.arraycopy(buffer, 0, grown, 0, count);
+                buffer = grown;
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        private byte[] toByteArray() {
+            if (count == buffer.length) {
+                return buffer;
+            }
+            byte[] result = new byte[count];
+            System.arraycopy(buffer, 0, result, 0, count);
+            return result;
+        }
+
+    }
+
+}
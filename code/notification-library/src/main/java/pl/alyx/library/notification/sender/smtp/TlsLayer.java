@@ -0,0 +1,203 @@
+package pl.alyx.library.notification.sender.smtp;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+final class TlsLayer {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final SocketChannel channel;
+    private final SSLEngine engine;
+    // netIn is kept ready for channel reads, netOut ready for channel writes
+    private ByteBuffer netIn;
+    private ByteBuffer netOut;
+
+    TlsLayer(SocketChannel channel, SSLEngine engine) {
+        this.channel = channel;
+        this.engine = engine;
+        int size = engine.getSession().getPacketBufferSize();
+        this.netIn = ByteBuffer.allocate(size);
+        this.netOut = ByteBuffer.allocate(size);
+        this.netOut.flip();
+    }
+
+    int getApplicationBufferSize() {
+        return engine.getSession().getApplicationBufferSize();
+    }
+
+    void begin() throws SSLException {
+        engine.beginHandshake();
+    }
+
+    boolean handshake(ByteBuffer dst) throws IOException {
+        while (true) {
+            if (!flush()) {
+                return false;
+            }
+            switch (engine.getHandshakeStatus()) {
+                case NEED_TASK:
+                    runTasks();
+                    break;
+                case NEED_WRAP:
+                    wrap(EMPTY);
+                    break;
+                case NEED_UNWRAP:
+                    if (!unwrap(dst)) {
+                        return false;
+                    }
+                    break;
+                default:
+                    return true;
+            }
+        }
+    }
+
+    int read(ByteBuffer dst) throws IOException {
+        int start = dst.position();
+        while (true) {
+            netIn.flip();
+            SSLEngineResult result;
+            try {
+                result = engine.unwrap(netIn, dst);
+            } finally {
+                netIn.compact();
+            }
+            handlePostHandshake(result);
+            switch (result.getStatus()) {
+                case OK:
+                    break;
+                case BUFFER_UNDERFLOW:
+                    ensureReadSpace();
+                    int count = channel.read(netIn);
+                    if (count < 0) {
+                        return dst.position() > start ? dst.position() - start : -1;
+                    }
+                    if (count == 0) {
+                        return dst.position() - start;
+                    }
+                    break;
+                case BUFFER_OVERFLOW:
+                    return dst.position() - start;
+                default:
+                    return dst.position() > start ? dst.position() - start : -1;
+            }
+        }
+    }
+
+    int write(ByteBuffer src) throws IOException {
+        int start = src.remaining();
+        while (flush() && src.hasRemaining()) {
+            wrap(src);
+        }
+        return start - src.remaining();
+    }
+
+    boolean flush() throws IOException {
+        while (netOut.hasRemaining()) {
+            if (channel.write(netOut) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean hasPendingOutput() {
+        return netOut.hasRemaining();
+    }
+
+    void close() {
+        engine.closeOutbound();
+        try {
+            if (flush()) {
+                wrap(EMPTY);
+                flush();
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private boolean unwrap(ByteBuffer dst) throws IOException {
+        netIn.flip();
+        SSLEngineResult result;
+        try {
+            result = engine.unwrap(netIn, dst);
+        } finally {
+            netIn.compact();
+        }
+        switch (result.getStatus()) {
+            case OK:
+                return true;
+            case BUFFER_UNDERFLOW:
+                ensureReadSpace();
+                int count = channel.read(netIn);
+                if (count < 0) {
+                    throw new EOFException("Connection closed during TLS handshake");
+                }
+                return count > 0;
+            case BUFFER_OVERFLOW:
+                throw new SSLException("No room for data received during TLS handshake");
+            default:
+                throw new EOFException("TLS connection closed during handshake");
+        }
+    }
+
+    private void wrap(ByteBuffer src) throws IOException {
+        netOut.compact();
+        SSLEngineResult result;
+        try {
+            result = engine.wrap(src, netOut);
+        } finally {
+            netOut.flip();
+        }
+        switch (result.getStatus()) {
+            case OK:
+                break;
+            case BUFFER_OVERFLOW:
+                // netOut is drained before every wrap, so it is only too small after the session grew
+                netOut = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+                netOut.flip();
+                break;
+            default:
+                throw new SSLException("TLS connection closed");
+        }
+        if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+            runTasks();
+        }
+    }
+
+    private void handlePostHandshake(SSLEngineResult result) throws IOException {
+        SSLEngineResult.HandshakeStatus status = result.getHandshakeStatus();
+        if (status == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+            runTasks();
+            status = engine.getHandshakeStatus();
+        }
+        if (status == SSLEngineResult.HandshakeStatus.NEED_WRAP && flush()) {
+            wrap(EMPTY);
+            flush();
+        }
+    }
+
+    private void ensureReadSpace() {
+        int size = engine.getSession().getPacketBufferSize();
+        if (netIn.remaining() < size) {
+            ByteBuffer grown = ByteBuffer.allocate(netIn.position() + size);
+            netIn.flip();
+            grown.put(netIn);
+            netIn = grown;
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+    }
+
+}
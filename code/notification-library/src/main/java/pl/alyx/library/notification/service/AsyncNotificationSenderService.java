@@ -0,0 +1,13 @@
+package pl.alyx.library.notification.service;
+
+import pl.alyx.library.notification.model.Notification;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncNotificationSenderService {
+
+    CompletableFuture<DeliveryResult> send(Notification notification);
+
+    int getQueueSize();
+
+}
@@ -0,0 +1,246 @@
+package pl.alyx.library.notification.service;
+
+import pl.alyx.library.notification.model.Notification;
+import pl.alyx.library.notification.model.Priority;
+import pl.alyx.library.notification.service.metrics.MetricsListener;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class DefaultAsyncNotificationSenderService implements AsyncNotificationSenderService, AutoCloseable {
+
+    private static final int[] DEFAULT_PRIORITY_WEIGHTS = {8, 3, 1};
+
+    private final DefaultNotificationSenderService service;
+    private final MetricsListener metrics;
+    private final WeightedPriorityQueue<Runnable> queue;
+    private final ThreadPoolExecutor executor;
+    private final int shutdownTimeout;
+
+    public DefaultAsyncNotificationSenderService(DefaultNotificationSenderService service, int workers, int capacity, OverflowPolicy overflowPolicy, int shutdownTimeout) {
+        this(service, workers, capacity, overflowPolicy, shutdownTimeout, DEFAULT_PRIORITY_WEIGHTS);
+    }
+
+    public DefaultAsyncNotificationSenderService(DefaultNotificationSenderService service, int workers, int capacity, OverflowPolicy overflowPolicy, int shutdownTimeout, int[] priorityWeights) {
+        this(service, workers, capacity, overflowPolicy, shutdownTimeout, priorityWeights, false);
+    }
+
+    public DefaultAsyncNotificationSenderService(DefaultNotificationSenderService service, int workers, int capacity, OverflowPolicy overflowPolicy, int shutdownTimeout, int[] priorityWeights, boolean virtualThreads) {
+        this.service = service;
+        this.metrics = service.getMetrics();
+        this.shutdownTimeout = shutdownTimeout;
+        this.queue = new WeightedPriorityQueue<>(capacity, priorityWeights, DefaultAsyncNotificationSenderService::priorityOf);
+        this.executor = new ThreadPoolExecutor(workers, workers, 60L, TimeUnit.SECONDS,
+                queue, NotificationExecutors.threadFactory("notification-sender", false, virtualThreads), createHandler(overflowPolicy));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public CompletableFuture<DeliveryResult> send(Notification notification) {
+        CompletableFuture<DeliveryResult> future = new CompletableFuture<>();
+        try {
+            executor.execute(new DeliveryTask(notification, future));
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getQueueSize(Priority priority) {
+        return queue.size(priority);
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    @Override
+    public void close() throws Exception {
+        executor.shutdown();
+        try {
+            if (shutdownTimeout < 0) {
+                while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    // keep draining until every queued notification is delivered
+                }
+            } else if (!executor.awaitTermination(shutdownTimeout, TimeUnit.SECONDS)) {
+                cancel(executor.shutdownNow());
+            }
+        } catch (InterruptedException e) {
+            cancel(executor.shutdownNow());
+            Thread.currentThread().interrupt();
+        } finally {
+            service.close();
+        }
+    }
+
+    private static Priority priorityOf(Runnable runnable) {
+        if (runnable instanceof DeliveryTask) {
+            Priority priority = ((DeliveryTask) runnable).notification.getPriority();
+            return priority == null ? Priority.NORMAL : priority;
+        }
+        return Priority.NORMAL;
+    }
+
+    private static void cancel(List<Runnable> pending) {
+        for (Runnable runnable : pending) {
+            if (runnable instanceof DeliveryTask) {
+                ((DeliveryTask) runnable).future.completeExceptionally(
+                        new CancellationException("Service closed before notification was delivered"));
+            }
+        }
+    }
+
+    private static RejectedExecutionHandler createHandler(OverflowPolicy overflowPolicy) {
+        switch (overflowPolicy) {
+            case BLOCK:
+                return (runnable, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Service is closed");
+                    }
+                    try {
+                        executor.getQueue().put(runnable);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted while waiting for queue space", e);
+                    }
+                    // close() may have drained the queue while this thread was waiting, nobody would run the task
+                    if (executor.isShutdown() && executor.getQueue().remove(runnable)) {
+                        throw new RejectedExecutionException("Service is closed");
+                    }
+                };
+            case CALLER_RUNS:
+                return (runnable, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Service is closed");
+                    }
+                    runnable.run();
+                };
+            case REJECT:
+            default:
+                return (runnable, executor) -> {
+                    throw new RejectedExecutionException(executor.isShutdown()
+                            ? "Service is closed" : "Notification queue is full");
+                };
+        }
+    }
+
+    public enum OverflowPolicy {
+        BLOCK,
+        REJECT,
+        CALLER_RUNS,
+    }
+
+    private class DeliveryTask implements Runnable {
+
+        private final Notification notification;
+        private final CompletableFuture<DeliveryResult> future;
+        private final long queued;
+
+        private DeliveryTask(Notification notification, CompletableFuture<DeliveryResult> future) {
+            this.notification = notification;
+            this.future = future;
+            this.queued = metrics == MetricsListener.NONE ? 0L : System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            if (metrics != MetricsListener.NONE) {
+                metrics.onQueueWait(System.nanoTime() - queued);
+            }
+            try {
+                future.complete(service.deliver(notification));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+    }
+
+    public static class Builder {
+
+        private DefaultNotificationSenderService service;
+        private int workers = 4;
+        private int capacity = 1000;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+        private int shutdownTimeout = 30;
+        private int[] priorityWeights = DEFAULT_PRIORITY_WEIGHTS;
+        private boolean virtualThreads;
+
+        public DefaultAsyncNotificationSenderService build() {
+            validate();
+            return new DefaultAsyncNotificationSenderService(
+                    service,
+                    workers,
+                    capacity,
+                    overflowPolicy,
+                    shutdownTimeout,
+                    priorityWeights,
+                    virtualThreads
+            );
+        }
+
+        private void validate() {
+            if (service == null) {
+                throw new IllegalArgumentException("Notification sender service is required");
+            }
+            if (workers <= 0) {
+                throw new IllegalArgumentException("Number of workers must be positive");
+            }
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("Queue capacity must be positive");
+            }
+            for (int weight : priorityWeights) {
+                if (weight <= 0) {
+                    throw new IllegalArgumentException("Priority weights must be positive");
+                }
+            }
+        }
+
+        public Builder service(DefaultNotificationSenderService service) {
+            this.service = service;
+            return this;
+        }
+
+        public Builder workers(int workers) {
+            this.workers = workers;
+            return this;
+        }
+
+        public Builder capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        public Builder overflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        public Builder shutdownTimeout(int shutdownTimeout) {
+            this.shutdownTimeout = shutdownTimeout;
+            return this;
+        }
+
+        public Builder virtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        public Builder priorityWeights(int high, int normal, int low) {
+            this.priorityWeights = new int[]{high, normal, low};
+            return this;
+        }
+
+    }
+
+}
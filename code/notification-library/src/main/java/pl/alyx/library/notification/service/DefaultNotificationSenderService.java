@@ -1,49 +1,377 @@
 package pl.alyx.library.notification.service;
 
-import pl.alyx.library.notification.exception.PermanentSendException;
-import pl.alyx.library.notification.exception.RetryableSendException;
+import pl.alyx.library.notification.exception.SendException;
 import pl.alyx.library.notification.model.Notification;
 import pl.alyx.library.notification.repository.NotificationRepository;
 import pl.alyx.library.notification.sender.NotificationSender;
+import pl.alyx.library.notification.service.config.DeduplicationConfig;
+import pl.alyx.library.notification.service.config.RetryConfig;
+import pl.alyx.library.notification.service.dedup.DeduplicationFilter;
+import pl.alyx.library.notification.service.metrics.MetricsListener;
+import pl.alyx.library.notification.service.metrics.SendOutcome;
+import pl.alyx.library.notification.service.retry.RetryListener;
+import pl.alyx.library.notification.service.retry.RetryScheduler;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public class DefaultNotificationSenderService implements NotificationSenderService, AutoCloseable {
 
     private final List<NotificationSender> senders;
+    private final List<NotificationRepository> repositories;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final RetryScheduler retryScheduler;
+    private final RetryListener retryListener;
+    private final MetricsListener metrics;
+    private final DeduplicationFilter deduplication;
+    private final Map<String, Integer> outstanding = new ConcurrentHashMap<>();
 
     public DefaultNotificationSenderService(List<NotificationSender> senders) {
+        this(senders, new ArrayList<>(), false, null, null, null);
+    }
+
+    public DefaultNotificationSenderService(List<NotificationSender> senders, List<NotificationRepository> repositories, boolean parallel, ExecutorService executor, RetryConfig retryConfig, RetryListener retryListener) {
+        this(senders, repositories, parallel, executor, retryConfig, retryListener, null);
+    }
+
+    public DefaultNotificationSenderService(List<NotificationSender> senders, List<NotificationRepository> repositories, boolean parallel, ExecutorService executor, RetryConfig retryConfig, RetryListener retryListener, MetricsListener metrics) {
+        this(senders, repositories, parallel, executor, retryConfig, retryListener, metrics, null);
+    }
+
+    public DefaultNotificationSenderService(List<NotificationSender> senders, List<NotificationRepository> repositories, boolean parallel, ExecutorService executor, RetryConfig retryConfig, RetryListener retryListener, MetricsListener metrics, DeduplicationConfig deduplicationConfig) {
         this.senders = senders;
+        this.deduplication = deduplicationConfig == null ? null : new DeduplicationFilter(deduplicationConfig);
+        this.repositories = repositories;
+        this.retryListener = retryListener == null ? RetryListener.NONE : retryListener;
+        this.metrics = metrics == null ? MetricsListener.NONE : metrics;
+        this.retryScheduler = retryConfig == null ? null : new RetryScheduler(retryConfig, new TrackingRetryListener(), this.metrics);
+        if (parallel && senders.size() > 1) {
+            this.ownExecutor = executor == null;
+            this.executor = executor == null ? NotificationExecutors.newSendExecutor("notification-fanout") : executor;
+        } else {
+            this.ownExecutor = false;
+            this.executor = null;
+        }
     }
 
     @Override
     public void close() throws Exception {
-
+        if (retryScheduler != null) {
+            retryScheduler.close();
+        }
+        if (ownExecutor) {
+            executor.shutdown();
+        }
+        Exception failure = null;
+        if (deduplication != null) {
+            try {
+                deduplication.close();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        for (NotificationSender sender : this.senders) {
+            try {
+                sender.close();
+            } catch (Exception e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        for (NotificationRepository repository : this.repositories) {
+            try {
+                repository.close();
+            } catch (Exception e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
     }
 
     @Override
     public void send(Notification notification) {
+        DeliveryResult result = deliver(notification);
+        if (result.isFailed()) {
+            throw new RuntimeException(result.getException());
+        }
+    }
+
+    public DeliveryResult deliver(Notification notification) {
+        if (deduplication == null) {
+            return accept(notification);
+        }
+        String id = notification.getId();
+        DeduplicationFilter.Status status = deduplication.acquire(id);
+        if (status != DeduplicationFilter.Status.NEW) {
+            return new DeliveryResult(notification, Collections.emptyList(), true,
+                    status == DeduplicationFilter.Status.SUSPECTED);
+        }
+        // the id is recorded only once delivery succeeded or a retry took it over, so a failed one can be resubmitted
+        boolean delivered = false;
+        try {
+            DeliveryResult result = accept(notification);
+            delivered = !result.isFailed();
+            return result;
+        } finally {
+            deduplication.release(id, delivered);
+        }
+    }
+
+    private DeliveryResult accept(Notification notification) {
+        for (NotificationRepository repository : this.repositories) {
+            repository.store(notification);
+        }
+        return dispatch(notification);
+    }
+
+    public int recover() {
+        Set<String> recovered = new HashSet<>();
+        for (NotificationRepository repository : this.repositories) {
+            for (Notification notification : repository.findPending()) {
+                if (recovered.add(notification.getId())) {
+                    dispatch(notification);
+                }
+            }
+        }
+        return recovered.size();
+    }
+
+    private DeliveryResult dispatch(Notification notification) {
+        if (this.repositories.isEmpty()) {
+            return executor != null ? deliverParallel(notification) : deliverSequential(notification);
+        }
+        // the notification stays pending in repositories until every scheduled retry is finished
+        begin(notification.getId());
+        boolean completed = false;
+        try {
+            DeliveryResult result = executor != null ? deliverParallel(notification) : deliverSequential(notification);
+            completed = true;
+            return result;
+        } finally {
+            complete(notification.getId(), completed);
+        }
+    }
+
+    private DeliveryResult deliverSequential(Notification notification) {
+        List<SenderResult> results = new ArrayList<>(this.senders.size());
         for (NotificationSender sender : this.senders) {
+            SenderResult result = sendTo(sender, notification);
+            results.add(result);
+            if (!result.isSuccess() && !result.isRetrying()) {
+                break;
+            }
+        }
+        return new DeliveryResult(notification, results);
+    }
+
+    private DeliveryResult deliverParallel(Notification notification) {
+        int count = this.senders.size();
+        List<Future<SenderResult>> futures = new ArrayList<>(count - 1);
+        for (int i = 1; i < count; i++) {
+            NotificationSender sender = this.senders.get(i);
+            futures.add(executor.submit(() -> sendTo(sender, notification)));
+        }
+        List<SenderResult> results = new ArrayList<>(count);
+        RuntimeException failure = null;
+        try {
+            results.add(sendTo(this.senders.get(0), notification));
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        boolean interrupted = false;
+        for (int i = 1; i < count; i++) {
+            Future<SenderResult> future = futures.get(i - 1);
+            while (true) {
+                try {
+                    results.add(future.get());
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    RuntimeException exception = cause instanceof RuntimeException
+                            ? (RuntimeException) cause : new RuntimeException(cause);
+                    if (failure == null) {
+                        failure = exception;
+                    } else {
+                        failure.addSuppressed(exception);
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return new DeliveryResult(notification, results);
+    }
+
+    public long getPendingRetryCount() {
+        return retryScheduler == null ? 0 : retryScheduler.getPendingCount();
+    }
+
+    public long getSuspectedDuplicateCount() {
+        return deduplication == null ? 0 : deduplication.getSuspectedCount();
+    }
+
+    MetricsListener getMetrics() {
+        return metrics;
+    }
+
+    private SenderResult sendTo(NotificationSender sender, Notification notification) {
+        // the clock is not read at all when nobody listens
+        long start = metrics == MetricsListener.NONE ? 0L : System.nanoTime();
+        try {
+            sender.send(notification);
+            record(sender, start, null);
+            return new SenderResult(sender, null);
+        } catch (SendException e) {
+            record(sender, start, e);
+            return new SenderResult(sender, e, scheduleRetry(sender, notification, e));
+        }
+    }
+
+    private void record(NotificationSender sender, long start, SendException exception) {
+        if (metrics != MetricsListener.NONE) {
+            metrics.onSend(sender, SendOutcome.of(exception), System.nanoTime() - start);
+        }
+    }
+
+    private boolean scheduleRetry(NotificationSender sender, Notification notification, SendException exception) {
+        if (retryScheduler == null || !exception.isRetryable()) {
+            return false;
+        }
+        if (this.repositories.isEmpty()) {
+            return retryScheduler.schedule(sender, notification, exception);
+        }
+        begin(notification.getId());
+        if (retryScheduler.schedule(sender, notification, exception)) {
+            return true;
+        }
+        // a closed scheduler never acknowledges, the notification is left for recover()
+        if (!retryScheduler.isClosed()) {
+            complete(notification.getId(), true);
+        }
+        return false;
+    }
+
+    private void begin(String id) {
+        outstanding.merge(id, 1, Integer::sum);
+    }
+
+    private void complete(String id, boolean acknowledge) {
+        if (outstanding.computeIfPresent(id, (key, count) -> count == 1 ? null : count - 1) == null && acknowledge) {
+            for (NotificationRepository repository : this.repositories) {
+                repository.acknowledge(id);
+            }
+        }
+    }
+
+    private class TrackingRetryListener implements RetryListener {
+
+        @Override
+        public void onSuccess(NotificationSender sender, Notification notification, int attempts) {
             try {
-                sender.send(notification);
-            } catch (PermanentSendException e) {
-                throw new RuntimeException(e);
-            } catch (RetryableSendException e) {
-                throw new RuntimeException(e);
+                retryListener.onSuccess(sender, notification, attempts);
+            } finally {
+                complete(notification.getId(), true);
             }
         }
+
+        @Override
+        public void onFailure(NotificationSender sender, Notification notification, int attempts, SendException exception) {
+            try {
+                retryListener.onFailure(sender, notification, attempts, exception);
+            } finally {
+                complete(notification.getId(), true);
+            }
+        }
+
+        // a cancelled retry keeps the notification outstanding, so it stays pending for recover()
+        @Override
+        public void onCancel(NotificationSender sender, Notification notification, int attempts) {
+            retryListener.onCancel(sender, notification, attempts);
+        }
+
     }
 
     public static class Builder {
 
         private List<NotificationSender> senders = new ArrayList<>();
+        private List<NotificationRepository> repositories = new ArrayList<>();
+        private boolean parallel;
+        private ExecutorService executor;
+        private RetryConfig retry;
+        private RetryListener retryListener;
+        private MetricsListener metrics;
+        private DeduplicationConfig deduplication;
 
         public DefaultNotificationSenderService build() {
-            return new DefaultNotificationSenderService(senders);
+            return new DefaultNotificationSenderService(
+                    senders,
+                    repositories,
+                    parallel,
+                    executor,
+                    retry,
+                    retryListener,
+                    metrics,
+                    deduplication
+            );
+        }
+
+        public Builder retry(RetryConfig retry) {
+            this.retry = retry;
+            return this;
+        }
+
+        public Builder retryListener(RetryListener retryListener) {
+            this.retryListener = retryListener;
+            return this;
+        }
+
+        public Builder deduplication(DeduplicationConfig deduplication) {
+            this.deduplication = deduplication;
+            return this;
+        }
+
+        public Builder metrics(MetricsListener metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder parallel(boolean parallel) {
+            this.parallel = parallel;
+            return this;
+        }
+
+        public Builder executor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
         }
 
         public Builder addRepository(NotificationRepository repository) {
+            this.repositories.add(repository);
             return this;
         }
 
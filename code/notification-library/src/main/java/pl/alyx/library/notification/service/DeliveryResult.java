@@ -0,0 +1,85 @@
+package pl.alyx.library.notification.service;
+
+import pl.alyx.library.notification.exception.SendException;
+import pl.alyx.library.notification.model.Notification;
+
+import java.util.Collections;
+import java.util.List;
+
+public class DeliveryResult {
+
+    private final Notification notification;
+    private final List<SenderResult> results;
+    private final boolean duplicate;
+    private final boolean suspected;
+
+    public DeliveryResult(Notification notification, List<SenderResult> results) {
+        this(notification, results, false);
+    }
+
+    public DeliveryResult(Notification notification, List<SenderResult> results, boolean duplicate) {
+        this(notification, results, duplicate, false);
+    }
+
+    public DeliveryResult(Notification notification, List<SenderResult> results, boolean duplicate, boolean suspected) {
+        this.notification = notification;
+        this.results = Collections.unmodifiableList(results);
+        this.duplicate = duplicate;
+        this.suspected = suspected;
+    }
+
+    public Notification getNotification() {
+        return notification;
+    }
+
+    public List<SenderResult> getResults() {
+        return results;
+    }
+
+    public boolean isDuplicate() {
+        return duplicate;
+    }
+
+    // dropped on a match that could not be confirmed, it may never have been sent
+    public boolean isSuspectedDuplicate() {
+        return suspected;
+    }
+
+    public boolean isSuccess() {
+        if (suspected) {
+            return false;
+        }
+        for (SenderResult result : results) {
+            if (!result.isSuccess()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isFailed() {
+        for (SenderResult result : results) {
+            if (!result.isSuccess() && !result.isRetrying()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public SendException getException() {
+        SendException retrying = null;
+        for (SenderResult result : results) {
+            if (result.isSuccess()) {
+                continue;
+            }
+            if (!result.isRetrying()) {
+                return result.getException();
+            }
+            if (retrying == null) {
+                retrying = result.getException();
+            }
+        }
+        return retrying;
+    }
+
+}
@@ -0,0 +1,31 @@
+package pl.alyx.library.notification.service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// a multi-release jar replaces this class with a virtual thread version on Java 21 and later
+public final class NotificationExecutors {
+
+    private NotificationExecutors() {
+    }
+
+    public static boolean isVirtualThreadsSupported() {
+        return false;
+    }
+
+    public static ExecutorService newSendExecutor(String name) {
+        return Executors.newCachedThreadPool(threadFactory(name, true, false));
+    }
+
+    static ThreadFactory threadFactory(String name, boolean daemon, boolean virtual) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(daemon);
+            return thread;
+        };
+    }
+
+}
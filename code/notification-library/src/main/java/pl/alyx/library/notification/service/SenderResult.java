@@ -0,0 +1,38 @@
+package pl.alyx.library.notification.service;
+
+import pl.alyx.library.notification.exception.SendException;
+import pl.alyx.library.notification.sender.NotificationSender;
+
+public class SenderResult {
+
+    private final NotificationSender sender;
+    private final SendException exception;
+    private final boolean retrying;
+
+    public SenderResult(NotificationSender sender, SendException exception) {
+        this(sender, exception, false);
+    }
+
+    public SenderResult(NotificationSender sender, SendException exception, boolean retrying) {
+        this.sender = sender;
+        this.exception = exception;
+        this.retrying = retrying;
+    }
+
+    public NotificationSender getSender() {
+        return sender;
+    }
+
+    public SendException getException() {
+        return exception;
+    }
+
+    public boolean isSuccess() {
+        return exception == null;
+    }
+
+    public boolean isRetrying() {
+        return retrying;
+    }
+
+}
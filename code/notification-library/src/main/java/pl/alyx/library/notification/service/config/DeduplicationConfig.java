@@ -0,0 +1,89 @@
+package pl.alyx.library.notification.service.config;
+
+import java.time.Duration;
+
+public class DeduplicationConfig {
+
+    private final long expectedIds;
+    private final double falsePositiveRate;
+    private final Duration window;
+    private final String path;
+
+    private DeduplicationConfig(long expectedIds, double falsePositiveRate, Duration window, String path) {
+        this.expectedIds = expectedIds;
+        this.falsePositiveRate = falsePositiveRate;
+        this.window = window;
+        this.path = path;
+    }
+
+    public long getExpectedIds() {
+        return expectedIds;
+    }
+
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    public Duration getWindow() {
+        return window;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public static class Builder {
+
+        private long expectedIds = 1_000_000L;
+        private double falsePositiveRate = 0.001;
+        private Duration window = Duration.ofHours(24);
+        private String path;
+
+        public DeduplicationConfig build() {
+            validate();
+            return new DeduplicationConfig(
+                    expectedIds,
+                    falsePositiveRate,
+                    window,
+                    path
+            );
+        }
+
+        private void validate() {
+            if (expectedIds < 1) {
+                throw new IllegalArgumentException("Expected number of ids must be positive");
+            }
+            if (!(falsePositiveRate > 0.0 && falsePositiveRate < 1.0)) {
+                throw new IllegalArgumentException("False positive rate must be between 0.0 and 1.0");
+            }
+            if (window == null || window.toMillis() < 1) {
+                throw new IllegalArgumentException("Deduplication window must be at least 1 millisecond");
+            }
+            if (path != null && path.trim().isEmpty()) {
+                throw new IllegalArgumentException("Deduplication state path must not be empty");
+            }
+        }
+
+        public Builder expectedIds(long expectedIds) {
+            this.expectedIds = expectedIds;
+            return this;
+        }
+
+        public Builder falsePositiveRate(double falsePositiveRate) {
+            this.falsePositiveRate = falsePositiveRate;
+            return this;
+        }
+
+        public Builder window(Duration window) {
+            this.window = window;
+            return this;
+        }
+
+        public Builder path(String path) {
+            this.path = path;
+            return this;
+        }
+
+    }
+
+}
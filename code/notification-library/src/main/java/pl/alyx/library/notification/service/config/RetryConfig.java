@@ -0,0 +1,166 @@
+package pl.alyx.library.notification.service.config;
+
+import java.time.Duration;
+
+public class RetryConfig {
+
+    private final int maxAttempts;
+    private final Duration initialDelay;
+    private final Duration maxDelay;
+    private final double multiplier;
+    private final double jitter;
+    private final Duration maxAge;
+    private final Duration tickDuration;
+    private final int workers;
+    private final Duration shutdownTimeout;
+
+    private RetryConfig(int maxAttempts, Duration initialDelay, Duration maxDelay, double multiplier, double jitter, Duration maxAge, Duration tickDuration, int workers, Duration shutdownTimeout) {
+        this.maxAttempts = maxAttempts;
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+        this.maxAge = maxAge;
+        this.tickDuration = tickDuration;
+        this.workers = workers;
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public Duration getInitialDelay() {
+        return initialDelay;
+    }
+
+    public Duration getMaxDelay() {
+        return maxDelay;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    public Duration getTickDuration() {
+        return tickDuration;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public Duration getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    public static class Builder {
+
+        private int maxAttempts = 5;
+        private Duration initialDelay = Duration.ofSeconds(1);
+        private Duration maxDelay = Duration.ofMinutes(5);
+        private double multiplier = 2.0;
+        private double jitter = 0.2;
+        private Duration maxAge = Duration.ofHours(1);
+        private Duration tickDuration = Duration.ofMillis(100);
+        private int workers = 2;
+        private Duration shutdownTimeout = Duration.ofSeconds(30);
+
+        public RetryConfig build() {
+            validate();
+            return new RetryConfig(
+                    maxAttempts,
+                    initialDelay,
+                    maxDelay,
+                    multiplier,
+                    jitter,
+                    maxAge,
+                    tickDuration,
+                    workers,
+                    shutdownTimeout
+            );
+        }
+
+        private void validate() {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("Maximum number of attempts must be at least 1");
+            }
+            if (initialDelay == null || initialDelay.isNegative()) {
+                throw new IllegalArgumentException("Initial delay must not be negative");
+            }
+            if (maxDelay == null || maxDelay.compareTo(initialDelay) < 0) {
+                throw new IllegalArgumentException("Maximum delay must not be shorter than initial delay");
+            }
+            if (multiplier < 1.0) {
+                throw new IllegalArgumentException("Multiplier must be at least 1.0");
+            }
+            if (jitter < 0.0 || jitter > 1.0) {
+                throw new IllegalArgumentException("Jitter must be between 0.0 and 1.0");
+            }
+            if (tickDuration == null || tickDuration.toMillis() < 1) {
+                throw new IllegalArgumentException("Tick duration must be at least 1 millisecond");
+            }
+            if (workers < 1) {
+                throw new IllegalArgumentException("Number of retry workers must be positive");
+            }
+            if (shutdownTimeout == null || shutdownTimeout.isNegative()) {
+                throw new IllegalArgumentException("Shutdown timeout must not be negative");
+            }
+        }
+
+        public Builder maxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public Builder initialDelay(Duration initialDelay) {
+            this.initialDelay = initialDelay;
+            return this;
+        }
+
+        public Builder maxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        public Builder multiplier(double multiplier) {
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        public Builder jitter(double jitter) {
+            this.jitter = jitter;
+            return this;
+        }
+
+        public Builder maxAge(Duration maxAge) {
+            this.maxAge = maxAge;
+            return this;
+        }
+
+        public Builder tickDuration(Duration tickDuration) {
+            this.tickDuration = tickDuration;
+            return this;
+        }
+
+        public Builder workers(int workers) {
+            this.workers = workers;
+            return this;
+        }
+
+        public Builder shutdownTimeout(Duration shutdownTimeout) {
+            this.shutdownTimeout = shutdownTimeout;
+            return this;
+        }
+
+    }
+
+}
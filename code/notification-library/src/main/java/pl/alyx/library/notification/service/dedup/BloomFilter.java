@@ -0,0 +1,75 @@
+package pl.alyx.library.notification.service.dedup;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+
+    BloomFilter(long bits, int hashes) {
+        long count = (bits + 63) >>> 6;
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bloom filter too large");
+        }
+        this.words = new AtomicLongArray((int) count);
+        this.bits = count << 6;
+        this.hashes = hashes;
+    }
+
+    // sets the bits of the id and reports whether all of them were already set
+    boolean add(long hash1, long hash2) {
+        boolean present = true;
+        long hash = hash1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(hash, bits);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word;
+            do {
+                word = words.get(index);
+                if ((word & mask) != 0) {
+                    break;
+                }
+            } while (!words.compareAndSet(index, word, word | mask));
+            if ((word & mask) == 0) {
+                present = false;
+            }
+            hash += hash2;
+        }
+        return present;
+    }
+
+    boolean contains(long hash1, long hash2) {
+        long hash = hash1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(hash, bits);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+            hash += hash2;
+        }
+        return true;
+    }
+
+    long size() {
+        return bits;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        for (int i = 0; i < words.length(); i++) {
+            out.writeLong(words.get(i));
+        }
+    }
+
+    void read(DataInputStream in) throws IOException {
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, in.readLong());
+        }
+    }
+
+}
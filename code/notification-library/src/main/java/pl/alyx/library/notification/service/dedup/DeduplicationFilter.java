@@ -0,0 +1,257 @@
+package pl.alyx.library.notification.service.dedup;
+
+import pl.alyx.library.notification.service.config.DeduplicationConfig;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class DeduplicationFilter implements AutoCloseable {
+
+    public enum Status {
+        NEW,
+        DUPLICATE,
+        // only matched by state loaded from disk, which cannot tell a false positive from a real copy
+        SUSPECTED
+    }
+
+    private static final int MAGIC = 0x4e444450;
+    private static final int VERSION = 1;
+
+    private final long bits;
+    private final int hashes;
+    private final long interval;
+    private final long capacity;
+    private final Path path;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong suspected = new AtomicLong();
+    private volatile Generations generations;
+
+    public DeduplicationFilter(DeduplicationConfig config) {
+        double n = config.getExpectedIds();
+        double ln2 = Math.log(2);
+        this.bits = (long) Math.ceil(-n * Math.log(config.getFalsePositiveRate()) / (ln2 * ln2));
+        this.hashes = Math.max(1, (int) Math.round(bits / n * ln2));
+        // an id is remembered for at least one window and at most two
+        this.interval = config.getWindow().toMillis();
+        this.capacity = config.getExpectedIds();
+        this.path = config.getPath() == null ? null : Paths.get(config.getPath());
+        Generations loaded = path == null ? null : load();
+        this.generations = loaded != null ? loaded
+                : new Generations(new Generation(new BloomFilter(bits, hashes), false), null, System.currentTimeMillis());
+    }
+
+    // claims the id for delivery, a NEW id stays in flight until it is released
+    public Status acquire(String id) {
+        rotate();
+        lock.readLock().lock();
+        try {
+            Generations current = generations;
+            if (current.previous != null && current.previous.ids.containsKey(id)
+                    || current.current.ids.putIfAbsent(id, Boolean.FALSE) != null) {
+                return Status.DUPLICATE;
+            }
+            long hash1 = hash1(id);
+            long hash2 = hash2(id);
+            if (current.current.isSuspected(hash1, hash2)
+                    || current.previous != null && current.previous.isSuspected(hash1, hash2)) {
+                current.current.ids.remove(id, Boolean.FALSE);
+                suspected.incrementAndGet();
+                return Status.SUSPECTED;
+            }
+            current.current.count.incrementAndGet();
+            return Status.NEW;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // records a delivered id, or forgets a failed one so it can be submitted again
+    public void release(String id, boolean delivered) {
+        lock.readLock().lock();
+        try {
+            Generations current = generations;
+            Generation generation = current.current.ids.containsKey(id) || current.previous == null
+                    || !current.previous.ids.containsKey(id) ? current.current : current.previous;
+            if (delivered) {
+                generation.ids.put(id, Boolean.TRUE);
+                generation.bloom.add(hash1(id), hash2(id));
+            } else {
+                generation.ids.remove(id, Boolean.FALSE);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // checks and records the id in one step
+    public boolean isDuplicate(String id) {
+        Status status = acquire(id);
+        if (status == Status.NEW) {
+            release(id, true);
+        }
+        return status != Status.NEW;
+    }
+
+    public long getSuspectedCount() {
+        return suspected.get();
+    }
+
+    public long getMemorySize() {
+        Generations current = generations;
+        return (current.current.bloom.size() + (current.previous == null ? 0 : current.previous.bloom.size())) / 8;
+    }
+
+    public void save() throws IOException {
+        if (path == null) {
+            return;
+        }
+        Generations current = generations;
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(bits);
+            out.writeInt(hashes);
+            out.writeLong(interval);
+            out.writeLong(current.rotated);
+            out.writeBoolean(current.previous != null);
+            current.current.bloom.write(out);
+            if (current.previous != null) {
+                current.previous.bloom.write(out);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() {
+        try {
+            save();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to save deduplication state to " + path, e);
+        }
+    }
+
+    private void rotate() {
+        Generations current = generations;
+        long now = System.currentTimeMillis();
+        if (now - current.rotated < interval && !isFull(current)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            current = generations;
+            long elapsed = now - current.rotated;
+            if (elapsed >= interval || isFull(current)) {
+                // a full generation is retired early so the false positive rate never exceeds the configured one
+                Generation previous = elapsed >= 2 * interval ? null : current.current;
+                long rotated = elapsed >= 2 * interval || elapsed < interval ? now : current.rotated + interval;
+                generations = new Generations(new Generation(new BloomFilter(bits, hashes), false), previous, rotated);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean isFull(Generations current) {
+        return current.current.count.get() >= capacity;
+    }
+
+    private Generations load() {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readLong() != bits || in.readInt() != hashes || in.readLong() != interval) {
+                // saved with other settings, the old ids cannot be looked up
+                return null;
+            }
+            long rotated = in.readLong();
+            boolean hasPrevious = in.readBoolean();
+            BloomFilter current = new BloomFilter(bits, hashes);
+            current.read(in);
+            BloomFilter previous = null;
+            if (hasPrevious) {
+                previous = new BloomFilter(bits, hashes);
+                previous.read(in);
+            }
+            return new Generations(new Generation(current, true),
+                    previous == null ? null : new Generation(previous, true), rotated);
+        } catch (IOException e) {
+            // a damaged state file is not worth refusing to start over
+            return null;
+        }
+    }
+
+    private static long hash1(String id) {
+        return hash(id, 0xcbf29ce484222325L, 0x100000001b3L);
+    }
+
+    private static long hash2(String id) {
+        return hash(id, 0x9e3779b97f4a7c15L, 0xff51afd7ed558ccdL) | 1L;
+    }
+
+    private static long hash(String id, long seed, long multiplier) {
+        long hash = seed;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= multiplier;
+        }
+        hash ^= id.length();
+        // murmur3 finalizer spreads the low-entropy bits of short ids
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static final class Generation {
+
+        // exact ids seen by this process, FALSE while in flight and TRUE once delivered
+        private final ConcurrentHashMap<String, Boolean> ids = new ConcurrentHashMap<>();
+        private final AtomicLong count = new AtomicLong();
+        private final BloomFilter bloom;
+        private final boolean restored;
+
+        private Generation(BloomFilter bloom, boolean restored) {
+            this.bloom = bloom;
+            this.restored = restored;
+        }
+
+        // ids delivered before a restart are only known to the Bloom filter
+        private boolean isSuspected(long hash1, long hash2) {
+            return restored && bloom.contains(hash1, hash2);
+        }
+
+    }
+
+    private static final class Generations {
+
+        private final Generation current;
+        private final Generation previous;
+        private final long rotated;
+
+        private Generations(Generation current, Generation previous, long rotated) {
+            this.current = current;
+            this.previous = previous;
+            this.rotated = rotated;
+        }
+
+    }
+
+}
@@ -0,0 +1,16 @@
+package pl.alyx.library.notification.service.metrics;
+
+import pl.alyx.library.notification.sender.NotificationSender;
+
+public interface MetricsListener {
+
+    MetricsListener NONE = new MetricsListener() {
+    };
+
+    default void onSend(NotificationSender sender, SendOutcome outcome, long nanos) {
+    }
+
+    default void onQueueWait(long nanos) {
+    }
+
+}
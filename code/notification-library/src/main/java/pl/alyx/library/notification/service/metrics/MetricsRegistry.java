@@ -0,0 +1,40 @@
+package pl.alyx.library.notification.service.metrics;
+
+import pl.alyx.library.notification.sender.NotificationSender;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class MetricsRegistry implements MetricsListener {
+
+    private final Map<NotificationSender, SenderMetrics> senders = new ConcurrentHashMap<>();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+
+    @Override
+    public void onSend(NotificationSender sender, SendOutcome outcome, long nanos) {
+        SenderMetrics metrics = senders.get(sender);
+        if (metrics == null) {
+            metrics = senders.computeIfAbsent(sender, key -> new SenderMetrics());
+        }
+        metrics.record(outcome, nanos);
+    }
+
+    @Override
+    public void onQueueWait(long nanos) {
+        queueWait.record(nanos);
+    }
+
+    public SenderMetrics getSenderMetrics(NotificationSender sender) {
+        return senders.get(sender);
+    }
+
+    public Map<NotificationSender, SenderMetrics> getSenders() {
+        return Collections.unmodifiableMap(senders);
+    }
+
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+}
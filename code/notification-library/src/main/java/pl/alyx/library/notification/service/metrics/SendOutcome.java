@@ -0,0 +1,17 @@
+package pl.alyx.library.notification.service.metrics;
+
+import pl.alyx.library.notification.exception.SendException;
+
+public enum SendOutcome {
+    SUCCESS,
+    PERMANENT,
+    RETRYABLE;
+
+    public static SendOutcome of(SendException exception) {
+        if (exception == null) {
+            return SUCCESS;
+        }
+        return exception.isRetryable() ? RETRYABLE : PERMANENT;
+    }
+
+}
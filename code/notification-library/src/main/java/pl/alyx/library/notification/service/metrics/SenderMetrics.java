@@ -0,0 +1,33 @@
+package pl.alyx.library.notification.service.metrics;
+
+public final class SenderMetrics {
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[SendOutcome.values().length];
+
+    SenderMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public LatencyHistogram getLatency(SendOutcome outcome) {
+        return histograms[outcome.ordinal()];
+    }
+
+    public long getCount(SendOutcome outcome) {
+        return histograms[outcome.ordinal()].getCount();
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (LatencyHistogram histogram : histograms) {
+            total += histogram.getCount();
+        }
+        return total;
+    }
+
+    void record(SendOutcome outcome, long nanos) {
+        histograms[outcome.ordinal()].record(nanos);
+    }
+
+}
@@ -0,0 +1,22 @@
+package pl.alyx.library.notification.service.retry;
+
+import pl.alyx.library.notification.exception.SendException;
+import pl.alyx.library.notification.model.Notification;
+import pl.alyx.library.notification.sender.NotificationSender;
+
+public interface RetryListener {
+
+    RetryListener NONE = new RetryListener() {
+    };
+
+    default void onSuccess(NotificationSender sender, Notification notification, int attempts) {
+    }
+
+    default void onFailure(NotificationSender sender, Notification notification, int attempts, SendException exception) {
+    }
+
+    // the scheduler was closed before the notification was delivered or given up
+    default void onCancel(NotificationSender sender, Notification notification, int attempts) {
+    }
+
+}
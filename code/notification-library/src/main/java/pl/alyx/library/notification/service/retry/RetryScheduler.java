@@ -0,0 +1,212 @@
+package pl.alyx.library.notification.service.retry;
+
+import pl.alyx.library.notification.exception.PartialSendException;
+import pl.alyx.library.notification.exception.PermanentSendException;
+import pl.alyx.library.notification.exception.SendException;
+import pl.alyx.library.notification.model.Notification;
+import pl.alyx.library.notification.sender.NotificationSender;
+import pl.alyx.library.notification.service.config.RetryConfig;
+import pl.alyx.library.notification.service.metrics.MetricsListener;
+import pl.alyx.library.notification.service.metrics.SendOutcome;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RetryScheduler implements AutoCloseable {
+
+    private final RetryConfig config;
+    private final RetryListener listener;
+    private final MetricsListener metrics;
+    private final HashedWheelTimer timer;
+    private final ExecutorService executor;
+    private volatile boolean closed;
+
+    public RetryScheduler(RetryConfig config, RetryListener listener) {
+        this(config, listener, null);
+    }
+
+    public RetryScheduler(RetryConfig config, RetryListener listener, MetricsListener metrics) {
+        this.config = config;
+        this.listener = listener == null ? RetryListener.NONE : listener;
+        this.metrics = metrics == null ? MetricsListener.NONE : metrics;
+        this.timer = new HashedWheelTimer("notification-retry-timer",
+                config.getTickDuration().toNanos(), TimeUnit.NANOSECONDS, 512);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(config.getWorkers(), config.getWorkers(), 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "notification-retry-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean schedule(NotificationSender sender, Notification notification, SendException exception) {
+        if (!exception.isRetryable() || config.getMaxAttempts() < 2) {
+            return false;
+        }
+        Retry retry = new Retry(sender, notification, System.nanoTime());
+        retry.narrow(exception);
+        long delay = computeDelay(retry.attempts);
+        // the caller still holds the failure, so a rejected first retry is not reported to the listener
+        return !isExpired(retry, delay) && enqueue(retry, delay);
+    }
+
+    public long getPendingCount() {
+        return timer.getPendingCount();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public long computeDelay(int attempt) {
+        double delay = config.getInitialDelay().toNanos() * Math.pow(config.getMultiplier(), attempt - 1);
+        delay = Math.min(delay, config.getMaxDelay().toNanos());
+        if (config.getJitter() > 0) {
+            double spread = delay * config.getJitter();
+            delay += ThreadLocalRandom.current().nextDouble(-spread, spread);
+        }
+        return Math.max(0L, (long) delay);
+    }
+
+    // running attempts are given the shutdown timeout to finish, every other retry is cancelled
+    @Override
+    public void close() {
+        closed = true;
+        for (HashedWheelTimer.Timeout timeout : timer.stop()) {
+            cancel((Retry) timeout.getTask());
+        }
+        executor.shutdown();
+        boolean interrupted = false;
+        try {
+            if (!executor.awaitTermination(config.getShutdownTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                drain();
+            }
+        } catch (InterruptedException e) {
+            drain();
+            interrupted = true;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        // queued attempts see the closed flag and only report the cancellation
+        for (Runnable task : executor.shutdownNow()) {
+            task.run();
+        }
+    }
+
+    private void reschedule(Retry retry, SendException exception) {
+        if (retry.attempts >= config.getMaxAttempts()) {
+            listener.onFailure(retry.sender, retry.notification, retry.attempts, exception);
+            return;
+        }
+        long delay = computeDelay(retry.attempts);
+        if (isExpired(retry, delay)) {
+            listener.onFailure(retry.sender, retry.notification, retry.attempts, exception);
+        } else if (!enqueue(retry, delay)) {
+            cancel(retry);
+        }
+    }
+
+    private boolean isExpired(Retry retry, long delay) {
+        return config.getMaxAge() != null
+                && System.nanoTime() + delay - retry.started > config.getMaxAge().toNanos();
+    }
+
+    private boolean enqueue(Retry retry, long delay) {
+        if (closed) {
+            return false;
+        }
+        try {
+            timer.schedule(retry, delay, TimeUnit.NANOSECONDS);
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private void dispatch(Retry retry) {
+        try {
+            executor.execute(() -> attempt(retry));
+        } catch (RejectedExecutionException e) {
+            cancel(retry);
+        }
+    }
+
+    private void attempt(Retry retry) {
+        if (closed) {
+            cancel(retry);
+            return;
+        }
+        retry.attempts++;
+        long start = metrics == MetricsListener.NONE ? 0L : System.nanoTime();
+        try {
+            if (retry.recipients == null) {
+                retry.sender.send(retry.notification);
+            } else {
+                retry.sender.send(retry.notification, retry.recipients);
+            }
+            record(retry, start, null);
+            listener.onSuccess(retry.sender, retry.notification, retry.attempts);
+        } catch (SendException e) {
+            record(retry, start, e);
+            if (e.isRetryable()) {
+                retry.narrow(e);
+                reschedule(retry, e);
+            } else {
+                listener.onFailure(retry.sender, retry.notification, retry.attempts, e);
+            }
+        } catch (RuntimeException e) {
+            listener.onFailure(retry.sender, retry.notification, retry.attempts,
+                    new PermanentSendException("Unexpected error during retry: " + e.getMessage(), e));
+        }
+    }
+
+    private void cancel(Retry retry) {
+        listener.onCancel(retry.sender, retry.notification, retry.attempts);
+    }
+
+    private void record(Retry retry, long start, SendException exception) {
+        if (metrics != MetricsListener.NONE) {
+            metrics.onSend(retry.sender, SendOutcome.of(exception), System.nanoTime() - start);
+        }
+    }
+
+    // timer task that hands the retry over to the workers
+    private final class Retry implements Runnable {
+
+        private final NotificationSender sender;
+        private final Notification notification;
+        private final long started;
+        private int attempts = 1;
+        private List<String> recipients;
+
+        private Retry(NotificationSender sender, Notification notification, long started) {
+            this.sender = sender;
+            this.notification = notification;
+            this.started = started;
+        }
+
+        @Override
+        public void run() {
+            dispatch(this);
+        }
+
+        private void narrow(SendException exception) {
+            if (exception instanceof PartialSendException) {
+                recipients = ((PartialSendException) exception).getUnsent();
+            }
+        }
+
+    }
+
+}
@@ -13,7 +13,41 @@ public final class HtmlUtils {
     }
 
     public static String makeText(String text) {
+        if (text == null) {
+            return "";
+        }
+        if (!hasMarkup(text)) {
+            return text;
+        }
         return Jsoup.parse(text).wholeText();
     }
 
+    public static boolean hasMarkup(String text) {
+        if (text == null) {
+            return false;
+        }
+        // a tag, comment or declaration starts with '<' followed by a letter, '/', '!' or '?'
+        // and an entity or character reference with '&' followed by a letter or '#'
+        int last = text.length() - 1;
+        for (int i = 0; i < last; i++) {
+            char c = text.charAt(i);
+            if (c == '<') {
+                char next = text.charAt(i + 1);
+                if (isAsciiLetter(next) || next == '/' || next == '!' || next == '?') {
+                    return true;
+                }
+            } else if (c == '&') {
+                char next = text.charAt(i + 1);
+                if (isAsciiLetter(next) || next == '#') {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
 }
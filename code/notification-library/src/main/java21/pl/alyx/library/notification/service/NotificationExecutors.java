@@ -0,0 +1,35 @@
+package pl.alyx.library.notification.service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Java 21 layer of the multi-release jar, the Java 8 class is the platform thread fallback
+public final class NotificationExecutors {
+
+    private NotificationExecutors() {
+    }
+
+    public static boolean isVirtualThreadsSupported() {
+        return true;
+    }
+
+    public static ExecutorService newSendExecutor(String name) {
+        return Executors.newThreadPerTaskExecutor(threadFactory(name, true, true));
+    }
+
+    static ThreadFactory threadFactory(String name, boolean daemon, boolean virtual) {
+        if (virtual) {
+            // virtual threads are always daemon threads
+            return Thread.ofVirtual().name(name + "-", 1).factory();
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(daemon);
+            return thread;
+        };
+    }
+
+}
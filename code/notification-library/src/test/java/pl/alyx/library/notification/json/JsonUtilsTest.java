@@ -0,0 +1,150 @@
+package pl.alyx.library.notification.json;
+
+import org.testng.annotations.Test;
+import pl.alyx.library.notification.exception.JsonParseException;
+import pl.alyx.library.notification.model.Attachment;
+import pl.alyx.library.notification.model.Notification;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.*;
+
+public class JsonUtilsTest {
+
+    private static Notification notification() {
+        return new Notification.Builder()
+                .id("n1")
+                .time(Instant.parse("2024-05-01T10:15:30.123Z"))
+                .type("email")
+                .recipient("user@localhost")
+                .cc(Arrays.asList("copy1@localhost", "copy2@localhost"))
+                .bcc(Arrays.asList("archive@localhost"))
+                .subject("Subject")
+                .message("<b>Hello</b>")
+                .format("html")
+                .priority("high")
+                .attachments(Arrays.asList(new Attachment.Builder()
+                        .file("file.txt")
+                        .mime("text/plain")
+                        .data("content".getBytes(StandardCharsets.UTF_8))
+                        .build()))
+                .build();
+    }
+
+    private static void assertNotification(Notification actual, Notification expected) {
+        assertEquals(actual.getId(), expected.getId());
+        assertEquals(actual.getTime(), expected.getTime());
+        assertEquals(actual.getType(), expected.getType());
+        assertEquals(actual.getTypeName(), expected.getTypeName());
+        assertEquals(actual.getRecipient(), expected.getRecipient());
+        assertEquals(actual.getCc(), expected.getCc());
+        assertEquals(actual.getBcc(), expected.getBcc());
+        assertEquals(actual.getSubject(), expected.getSubject());
+        assertEquals(actual.getMessage(), expected.getMessage());
+        assertEquals(actual.getFormat(), expected.getFormat());
+        assertEquals(actual.getPriority(), expected.getPriority());
+        assertEquals(actual.getPriorityName(), expected.getPriorityName());
+        assertEquals(actual.getAttachments().size(), 1);
+        assertEquals(actual.getAttachments().get(0).getFile(), "file.txt");
+        assertEquals(actual.getAttachments().get(0).getMime(), "text/plain");
+        assertEquals(actual.getAttachments().get(0).getData(), "content".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Set<Path> temporaryFiles() throws IOException {
+        try (Stream<Path> paths = Files.list(Paths.get(System.getProperty("java.io.tmpdir")))) {
+            return paths.collect(Collectors.toSet());
+        }
+    }
+
+    @Test
+    public void testString() {
+        Notification notification = notification();
+        String json = JsonUtils.toJson(notification);
+        assertNotification(JsonUtils.fromJson(json, Notification.class), notification);
+        assertEquals(JsonUtils.toJson(JsonUtils.fromJson(JsonUtils.toJson(notification, true), Notification.class)), json);
+    }
+
+    @Test
+    public void testStream() {
+        Notification notification = notification();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonUtils.toJson(notification, out);
+        assertEquals(new String(out.toByteArray(), StandardCharsets.UTF_8), JsonUtils.toJson(notification));
+        assertNotification(JsonUtils.fromJson(new ByteArrayInputStream(out.toByteArray()), Notification.class), notification);
+
+        StringWriter writer = new StringWriter();
+        JsonUtils.toJson(notification, writer, true);
+        assertNotification(JsonUtils.fromJson(new StringReader(writer.toString()), Notification.class), notification);
+    }
+
+    @Test
+    public void testUnknownAndNullFields() {
+        Notification notification = JsonUtils.fromJson("{\"id\":\"n2\",\"message\":\"Hello\",\"subject\":null,\"extra\":{\"a\":[1,2]}}", Notification.class);
+        assertEquals(notification.getId(), "n2");
+        assertEquals(notification.getMessage(), "Hello");
+        assertNull(notification.getSubject());
+    }
+
+    @Test
+    public void testCustomValues() {
+        String json = "{\"id\":\"n3\",\"type\":\"push\",\"message\":\"Hello\",\"format\":\"markdown\",\"priority\":\"urgent\"}";
+        Notification notification = JsonUtils.fromJson(json, Notification.class);
+        assertNull(notification.getType());
+        assertEquals(notification.getTypeName(), "PUSH");
+        Notification copy = JsonUtils.fromJson(JsonUtils.toJson(notification), Notification.class);
+        assertEquals(copy.getTypeName(), "PUSH");
+        assertEquals(copy.getFormatName(), "MARKDOWN");
+        assertEquals(copy.getPriorityName(), "URGENT");
+    }
+
+    @Test
+    public void testChunkedAttachment() throws IOException {
+        byte[] data = new byte[3 * 1024 * 1024 + 17];
+        new Random(7).nextBytes(data);
+        Notification notification = new Notification.Builder()
+                .id("n3")
+                .message("Report")
+                .attachments(Arrays.asList(new Attachment.Builder()
+                        .file("large.bin")
+                        .buffer(ByteBuffer.wrap(data))
+                        .build()))
+                .build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonUtils.toJson(notification, out);
+        String json = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"data\":[\""));
+
+        Set<Path> files = temporaryFiles();
+        Notification result = JsonUtils.fromJson(new ByteArrayInputStream(out.toByteArray()), Notification.class);
+        Attachment attachment = result.getAttachments().get(0);
+        // decoded content stays in memory, nothing is left behind on disk
+        assertEquals(temporaryFiles(), files);
+        assertEquals(attachment.getFile(), "large.bin");
+        assertEquals(attachment.getSize(), data.length);
+        assertEquals(attachment.getData(), data);
+
+        Notification legacy = JsonUtils.fromJson("{\"id\":\"n4\",\"message\":\"Hello\",\"attachments\":[{\"data\":\"Y29udGVudA==\"}]}", Notification.class);
+        assertEquals(legacy.getAttachments().get(0).getData(), "content".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test(expectedExceptions = JsonParseException.class)
+    public void testMalformed() {
+        JsonUtils.fromJson("{\"id\":", Notification.class);
+    }
+
+}
@@ -0,0 +1,66 @@
+package pl.alyx.library.notification.json;
+
+import org.testng.annotations.Test;
+import pl.alyx.library.notification.model.Notification;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.*;
+
+public class NdjsonTest {
+
+    @Test
+    public void testRoundTrip() {
+        List<Notification> notifications = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            notifications.add(new Notification.Builder()
+                    .id("n" + i)
+                    .recipient("user" + i + "@localhost")
+                    .message("Line one\nLine two " + i)
+                    .build());
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(JsonUtils.toNdjson(notifications.iterator(), out), 100);
+        String content = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals(content.split("\n").length, 100);
+        try (Stream<Notification> stream = JsonUtils.fromNdjson(new ByteArrayInputStream(out.toByteArray()))) {
+            List<Notification> read = stream.collect(Collectors.toList());
+            assertEquals(read.size(), 100);
+            assertEquals(read.get(42).getId(), "n42");
+            assertEquals(read.get(42).getMessage(), "Line one\nLine two 42");
+        }
+    }
+
+    @Test
+    public void testSkipMalformedLines() throws IOException {
+        String content = "{\"id\":\"a\",\"message\":\"A\"}\n"
+                + "{\"id\":\"b\",\"message\":\n"
+                + "\n"
+                + "{\"id\":\"c\"}\n"
+                + "{\"id\":\"d\",\"message\":\"D\"}\n";
+        List<Long> lines = new ArrayList<>();
+        try (NdjsonReader<Notification> reader = new NdjsonReader<>(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), Notification.class,
+                (line, record, exception) -> lines.add(line))) {
+            List<String> ids = new ArrayList<>();
+            while (reader.hasNext()) {
+                ids.add(reader.next().getId());
+            }
+            assertEquals(ids.size(), 2);
+            assertEquals(ids.get(0), "a");
+            assertEquals(ids.get(1), "d");
+            assertEquals(reader.getErrorCount(), 2);
+            assertEquals(lines.size(), 2);
+            assertEquals(lines.get(0).longValue(), 2L);
+            assertEquals(lines.get(1).longValue(), 4L);
+        }
+    }
+
+}
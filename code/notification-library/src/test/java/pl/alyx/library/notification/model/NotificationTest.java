@@ -0,0 +1,76 @@
+package pl.alyx.library.notification.model;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.testng.Assert.*;
+
+public class NotificationTest {
+
+    @Test
+    public void testId() {
+        Notification generated = new Notification.Builder().message("Hello").build();
+        assertEquals(UUID.fromString(generated.getId()).toString(), generated.getId());
+        assertEquals(generated.getId(), generated.getId());
+
+        String uuid = "4f1c6d3e-8a5b-4c2d-9e7f-0a1b2c3d4e5f";
+        assertEquals(new Notification.Builder().id(uuid).message("Hello").build().getId(), uuid);
+        // ids that are not in canonical form are returned exactly as given
+        String upper = uuid.toUpperCase();
+        assertEquals(new Notification.Builder().id(upper).message("Hello").build().getId(), upper);
+        assertEquals(new Notification.Builder().id("order-42").message("Hello").build().getId(), "order-42");
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testNullId() {
+        new Notification.Builder().id((String) null).message("Hello").build();
+    }
+
+    @Test
+    public void testLists() {
+        List<String> cc = new ArrayList<>(Arrays.asList("a@example.com", "b@example.com"));
+        Notification.Builder builder = new Notification.Builder()
+                .message("Hello")
+                .cc(cc)
+                .bcc(Collections.singletonList("c@example.com"))
+                .attachments(Collections.emptyList());
+        cc.clear();
+        Notification first = builder.build();
+        Notification second = builder.build();
+        assertEquals(first.getCc(), Arrays.asList("a@example.com", "b@example.com"));
+        assertSame(first.getCc(), second.getCc());
+        assertEquals(first.getBcc(), Collections.singletonList("c@example.com"));
+        assertNull(first.getAttachments());
+        try {
+            first.getCc().set(0, "x@example.com");
+            fail("List is modifiable");
+        } catch (UnsupportedOperationException e) {
+            assertEquals(first.getCc().get(0), "a@example.com");
+        }
+    }
+
+    @Test
+    public void testEnums() {
+        Notification notification = new Notification.Builder()
+                .message("Hello")
+                .type(" email ")
+                .format("html")
+                .priority("urgent")
+                .build();
+        assertEquals(notification.getType(), NotificationType.EMAIL);
+        assertEquals(notification.getTypeName(), "EMAIL");
+        assertEquals(notification.getFormat(), Format.HTML);
+        // unknown values have no enum constant but are kept by name
+        assertNull(notification.getPriority());
+        assertEquals(notification.getPriorityName(), "URGENT");
+        assertEquals(new Notification.Builder().message("Hello").type("push").build().getTypeName(), "PUSH");
+        assertNull(new Notification.Builder().message("Hello").type(" ").build().getTypeName());
+        assertEquals(new Notification.Builder().message("Hello").priority(Priority.LOW).build().getPriority(), Priority.LOW);
+    }
+
+}
@@ -0,0 +1,241 @@
+package pl.alyx.library.notification.repository.impl;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import pl.alyx.library.notification.model.Notification;
+import pl.alyx.library.notification.repository.config.FileRepositoryConfig;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.*;
+
+public class FileRepositoryTest {
+
+    private Path directory;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("file-repository");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private FileRepository open(long segmentSize) {
+        return new FileRepository(new FileRepositoryConfig.Builder()
+                .path(directory.toString())
+                .segmentSize(segmentSize)
+                .build());
+    }
+
+    private static Notification notification(String id) {
+        return new Notification.Builder()
+                .id(id)
+                .recipient("user@localhost")
+                .subject("Subject " + id)
+                .message("Message " + id)
+                .build();
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testRecoverPending() {
+        try (FileRepository repository = open(1024 * 1024)) {
+            repository.store(notification("a"));
+            repository.store(notification("b"));
+            repository.store(notification("c"));
+            repository.acknowledge("b");
+        }
+        try (FileRepository repository = open(1024 * 1024)) {
+            List<Notification> pending = repository.findPending();
+            assertEquals(pending.size(), 2);
+            assertEquals(pending.get(0).getId(), "a");
+            assertEquals(pending.get(0).getSubject(), "Subject a");
+            assertEquals(pending.get(1).getId(), "c");
+        }
+    }
+
+    @Test
+    public void testRollAndRemoveSegments() throws IOException {
+        try (FileRepository repository = open(1024)) {
+            for (int i = 0; i < 50; i++) {
+                repository.store(notification("n" + i));
+            }
+            assertTrue(segments().size() > 1);
+            for (int i = 0; i < 50; i++) {
+                repository.acknowledge("n" + i);
+            }
+            repository.store(notification("last"));
+            assertEquals(segments().size(), 1);
+            assertEquals(repository.getPendingCount(), 1);
+        }
+        try (FileRepository repository = open(1024)) {
+            List<Notification> pending = repository.findPending();
+            assertEquals(pending.size(), 1);
+            assertEquals(pending.get(0).getId(), "last");
+        }
+    }
+
+    @Test
+    public void testRetryFailedSegmentRemoval() throws IOException {
+        try (FileRepository repository = open(1024)) {
+            for (int i = 0; i < 50; i++) {
+                repository.store(notification("n" + i));
+            }
+            List<Path> written = segments();
+            assertTrue(written.size() > 2);
+            List<Path> obsolete = written.subList(0, written.size() - 1);
+
+            // a non-empty directory in place of the oldest segment cannot be deleted
+            Path oldest = obsolete.get(0);
+            Files.delete(oldest);
+            Path blocker = Files.createDirectory(oldest).resolve("blocker");
+            Files.createFile(blocker);
+
+            for (int i = 0; i < 50; i++) {
+                repository.acknowledge("n" + i);
+            }
+            repository.store(notification("first"));
+            // later segments stay until the oldest one is gone
+            for (Path path : obsolete) {
+                assertTrue(Files.exists(path), path.toString());
+            }
+
+            Files.delete(blocker);
+            repository.store(notification("second"));
+            for (Path path : obsolete) {
+                assertFalse(Files.exists(path), path.toString());
+            }
+        }
+        try (FileRepository repository = open(1024)) {
+            List<Notification> pending = repository.findPending();
+            assertEquals(pending.size(), 2);
+            assertEquals(pending.get(0).getId(), "first");
+            assertEquals(pending.get(1).getId(), "second");
+        }
+    }
+
+    @Test
+    public void testTruncateTornWrite() throws IOException {
+        try (FileRepository repository = open(1024 * 1024)) {
+            repository.store(notification("a"));
+            repository.store(notification("b"));
+        }
+        Path segment = segments().get(0);
+        long size = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 5);
+        }
+        try (FileRepository repository = open(1024 * 1024)) {
+            List<Notification> pending = repository.findPending();
+            assertEquals(pending.size(), 1);
+            assertEquals(pending.get(0).getId(), "a");
+            repository.store(notification("c"));
+        }
+        try (FileRepository repository = open(1024 * 1024)) {
+            assertEquals(repository.getPendingCount(), 2);
+        }
+    }
+
+    @Test
+    public void testFind() {
+        try (FileRepository repository = open(2048)) {
+            for (int i = 0; i < 40; i++) {
+                repository.store(notification("n" + i));
+            }
+            repository.acknowledge("n5");
+            assertEquals(repository.find("n5").getMessage(), "Message n5");
+            assertEquals(repository.find("n39").getMessage(), "Message n39");
+            assertNull(repository.find("missing"));
+        }
+        try (FileRepository repository = open(2048)) {
+            assertEquals(repository.find("n17").getSubject(), "Subject n17");
+        }
+    }
+
+    @Test
+    public void testFindWhileAppending() throws Exception {
+        AtomicInteger stored = new AtomicInteger(-1);
+        AtomicBoolean done = new AtomicBoolean();
+        try (FileRepository repository = open(1024 * 1024)) {
+            // the reader keeps looking up the newest record, past the end of the current mapping
+            CompletableFuture<Integer> reader = CompletableFuture.supplyAsync(() -> {
+                int reads = 0;
+                while (!done.get()) {
+                    int last = stored.get();
+                    if (last >= 0) {
+                        assertEquals(repository.find("n" + last).getMessage(), "Message n" + last);
+                        assertEquals(repository.find("n" + last / 2).getMessage(), "Message n" + last / 2);
+                        reads++;
+                    }
+                }
+                return reads;
+            });
+            for (int i = 0; i < 2000; i++) {
+                repository.store(notification("n" + i));
+                stored.set(i);
+            }
+            done.set(true);
+            assertTrue(reader.get(10, TimeUnit.SECONDS) > 0);
+            assertEquals(repository.find("n1999").getMessage(), "Message n1999");
+        }
+        // the space mapped ahead of the last record is not replayed as data
+        try (FileRepository repository = open(1024 * 1024)) {
+            assertEquals(repository.getPendingCount(), 2000);
+            repository.store(notification("after"));
+            assertEquals(repository.find("after").getMessage(), "Message after");
+        }
+        try (FileRepository repository = open(1024 * 1024)) {
+            assertEquals(repository.getPendingCount(), 2001);
+            assertEquals(repository.find("n0").getMessage(), "Message n0");
+            assertEquals(repository.find("after").getMessage(), "Message after");
+        }
+    }
+
+    @Test
+    public void testFindByTime() {
+        Instant base = Instant.parse("2024-01-01T00:00:00Z");
+        try (FileRepository repository = open(2048)) {
+            // stored out of order to check that the index stays sorted
+            for (int i : new int[]{3, 1, 4, 0, 2, 9, 7, 8, 5, 6}) {
+                repository.store(new Notification.Builder()
+                        .id("n" + i)
+                        .time(base.plusSeconds(i))
+                        .message("Message " + i)
+                        .build());
+            }
+            List<Notification> found = repository.findByTime(base.plusSeconds(2), base.plusSeconds(6));
+            assertEquals(found.size(), 4);
+            for (int i = 0; i < found.size(); i++) {
+                assertEquals(found.get(i).getId(), "n" + (i + 2));
+            }
+            assertTrue(repository.findByTime(base.minusSeconds(10), base).isEmpty());
+        }
+    }
+
+}
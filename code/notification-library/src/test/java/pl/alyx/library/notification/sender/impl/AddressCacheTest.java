@@ -0,0 +1,48 @@
+package pl.alyx.library.notification.sender.impl;
+
+import org.testng.annotations.Test;
+
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+
+import static org.testng.Assert.*;
+
+public class AddressCacheTest {
+
+    @Test
+    public void testParse() throws AddressException {
+        AddressCache cache = new AddressCache(100);
+        InternetAddress address = cache.parse("user@example.com");
+        assertEquals(address.getAddress(), "user@example.com");
+        assertSame(cache.parse("user@example.com"), address);
+        assertEquals(cache.parse("John Doe <john@example.com>").getAddress(), "john@example.com");
+        assertEquals(cache.size(), 2);
+    }
+
+    @Test
+    public void testNegative() {
+        AddressCache cache = new AddressCache(100);
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.parse("not an address");
+                fail("Invalid address accepted");
+            } catch (AddressException e) {
+                assertNotNull(e.getMessage());
+            }
+        }
+        assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void testBounded() throws AddressException {
+        AddressCache cache = new AddressCache(100);
+        InternetAddress first = cache.parse("user0@example.com");
+        for (int i = 1; i < 1000; i++) {
+            cache.parse("user" + i + "@example.com");
+            // a frequently used address survives generation swaps
+            assertSame(cache.parse("user0@example.com"), first);
+        }
+        assertTrue(cache.size() <= 100, "Cache size " + cache.size());
+    }
+
+}
@@ -0,0 +1,109 @@
+package pl.alyx.library.notification.sender.impl;
+
+import org.testng.annotations.Test;
+import pl.alyx.library.notification.exception.CircuitOpenException;
+import pl.alyx.library.notification.exception.PartialSendException;
+import pl.alyx.library.notification.exception.PermanentSendException;
+import pl.alyx.library.notification.exception.RetryableSendException;
+import pl.alyx.library.notification.model.Notification;
+import pl.alyx.library.notification.sender.NotificationSender;
+import pl.alyx.library.notification.sender.config.CircuitBreakerConfig;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class CircuitBreakerSenderTest {
+
+    private static final Notification NOTIFICATION = new Notification.Builder().message("Hello").build();
+
+    private static CircuitBreakerConfig config() {
+        return new CircuitBreakerConfig.Builder()
+                .windowSize(4)
+                .minimumCalls(4)
+                .failureRate(0.5)
+                .openDuration(Duration.ofMillis(50))
+                .build();
+    }
+
+    @Test
+    public void testOpenAndRecover() throws Exception {
+        AtomicBoolean down = new AtomicBoolean(true);
+        AtomicInteger calls = new AtomicInteger();
+        NotificationSender sender = notification -> {
+            calls.incrementAndGet();
+            if (down.get()) {
+                throw new RetryableSendException("Connection refused");
+            }
+        };
+        CircuitBreakerSender breaker = new CircuitBreakerSender(sender, config());
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(breaker.getState(), CircuitBreakerSender.State.CLOSED);
+            assertThrows(RetryableSendException.class, () -> breaker.send(NOTIFICATION));
+        }
+        assertEquals(breaker.getState(), CircuitBreakerSender.State.OPEN);
+        assertThrows(CircuitOpenException.class, () -> breaker.send(NOTIFICATION));
+        assertEquals(calls.get(), 4);
+
+        // a failed probe opens the circuit again
+        Thread.sleep(60);
+        assertThrows(RetryableSendException.class, () -> breaker.send(NOTIFICATION));
+        assertEquals(calls.get(), 5);
+        assertEquals(breaker.getState(), CircuitBreakerSender.State.OPEN);
+
+        down.set(false);
+        Thread.sleep(60);
+        breaker.send(NOTIFICATION);
+        assertEquals(breaker.getState(), CircuitBreakerSender.State.CLOSED);
+        assertEquals(calls.get(), 6);
+    }
+
+    @Test
+    public void testPermanentErrorsKeepCircuitClosed() {
+        CircuitBreakerSender breaker = new CircuitBreakerSender(notification -> {
+            throw new PermanentSendException("User unknown");
+        }, config());
+        for (int i = 0; i < 10; i++) {
+            assertThrows(PermanentSendException.class, () -> breaker.send(NOTIFICATION));
+        }
+        assertEquals(breaker.getState(), CircuitBreakerSender.State.CLOSED);
+    }
+
+    @Test
+    public void testPartialErrorsKeepCircuitClosed() {
+        CircuitBreakerSender breaker = new CircuitBreakerSender(notification -> {
+            throw new PartialSendException("Mailbox busy", null,
+                    Arrays.asList("a@example.com"), Arrays.asList("b@example.com"), Collections.emptyList());
+        }, config());
+        for (int i = 0; i < 10; i++) {
+            // still a RetryableSendException for callers of the sender interface
+            RetryableSendException e = expectThrows(RetryableSendException.class, () -> breaker.send(NOTIFICATION));
+            assertTrue(e instanceof PartialSendException);
+        }
+        assertEquals(breaker.getState(), CircuitBreakerSender.State.CLOSED);
+
+        PartialSendException rejected = new PartialSendException("User unknown", null,
+                Arrays.asList("a@example.com"), Collections.emptyList(), Arrays.asList("b@example.com"));
+        assertFalse(rejected.isRetryable());
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        AtomicInteger fallbackCalls = new AtomicInteger();
+        CircuitBreakerSender breaker = new CircuitBreakerSender(notification -> {
+            throw new RetryableSendException("Connection refused");
+        }, config(), notification -> fallbackCalls.incrementAndGet());
+        for (int i = 0; i < 4; i++) {
+            assertThrows(RetryableSendException.class, () -> breaker.send(NOTIFICATION));
+        }
+        breaker.send(NOTIFICATION);
+        breaker.send(NOTIFICATION);
+        assertEquals(fallbackCalls.get(), 2);
+    }
+
+}
@@ -0,0 +1,331 @@
+package pl.alyx.library.notification.sender.impl;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import pl.alyx.library.notification.exception.PartialSendException;
+import pl.alyx.library.notification.exception.PermanentSendException;
+import pl.alyx.library.notification.exception.RetryableSendException;
+import pl.alyx.library.notification.exception.SendException;
+import pl.alyx.library.notification.model.Attachment;
+import pl.alyx.library.notification.model.Format;
+import pl.alyx.library.notification.model.Notification;
+import pl.alyx.library.notification.sender.config.EmailSenderConfig;
+import pl.alyx.library.notification.sender.config.MailServerConfig;
+import pl.alyx.library.notification.sender.config.MailServerSecurity;
+import pl.alyx.library.notification.testing.FakeSmtpServer;
+
+import javax.mail.Multipart;
+import javax.mail.Part;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class EmailSenderTest {
+
+    private FakeSmtpServer server;
+    private EmailSender sender;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        server = new FakeSmtpServer.Builder().start();
+        sender = new EmailSender(new EmailSenderConfig.Builder()
+                .server(new MailServerConfig.Builder()
+                        .host("127.0.0.1")
+                        .port(server.getPort())
+                        .security(MailServerSecurity.NONE)
+                        .timeout(5)
+                        .build())
+                .fromMail("robot@example.com")
+                .build());
+    }
+
+    @AfterClass
+    public void tearDown() {
+        sender.close();
+        server.close();
+    }
+
+    @Test
+    public void testDelivery() throws SendException {
+        sender.send(notification("user@example.com"));
+        List<FakeSmtpServer.Message> messages = server.getMessages();
+        FakeSmtpServer.Message message = messages.get(messages.size() - 1);
+        assertEquals(message.getFrom(), "robot@example.com");
+        assertEquals(message.getRecipients(), Arrays.asList("user@example.com"));
+        assertTrue(message.getContent().contains("Subject: Test"));
+    }
+
+    @Test(expectedExceptions = RetryableSendException.class)
+    public void testTemporaryFailure() throws SendException {
+        sender.send(notification("tempfail@example.com"));
+    }
+
+    @Test(expectedExceptions = PermanentSendException.class)
+    public void testPermanentFailure() throws SendException {
+        sender.send(notification("permfail@example.com"));
+    }
+
+    @Test(expectedExceptions = RetryableSendException.class)
+    public void testDroppedConnection() throws SendException {
+        sender.send(notification("drop@example.com"));
+    }
+
+    @Test
+    public void testPartialFailure() throws SendException {
+        try {
+            sender.send(new Notification.Builder()
+                    .recipient("user@example.com")
+                    .cc(Arrays.asList("permfail@example.com", "tempfail@example.com"))
+                    .subject("Test")
+                    .message("Hello")
+                    .build());
+            fail("Partial failure not reported");
+        } catch (PartialSendException e) {
+            assertEquals(e.getSent(), Arrays.asList("user@example.com"));
+            assertEquals(e.getInvalid(), Arrays.asList("permfail@example.com"));
+            assertEquals(e.getUnsent(), Arrays.asList("tempfail@example.com"));
+        }
+    }
+
+    @Test
+    public void testSendAfterDroppedConnection() throws SendException {
+        try {
+            sender.send(notification("drop@example.com"));
+            fail("Dropped connection not reported");
+        } catch (RetryableSendException e) {
+            // the dead connection must not go back to the pool
+        }
+        sender.send(notification("user@example.com"));
+    }
+
+    @Test
+    public void testBulk() throws SendException {
+        PreparedEmail email = sender.prepare(notification(null));
+        int before = server.getMessages().size();
+        List<String> rejected = sender.sendBulk(email,
+                Arrays.asList("a@example.com", "a b@example", "permfail@example.com", "b@example.com"));
+        assertEquals(rejected, Arrays.asList("a b@example", "permfail@example.com"));
+
+        List<FakeSmtpServer.Message> messages = server.getMessages();
+        assertEquals(messages.size(), before + 2);
+        FakeSmtpServer.Message first = messages.get(before);
+        FakeSmtpServer.Message second = messages.get(before + 1);
+        assertEquals(first.getRecipients(), Arrays.asList("a@example.com"));
+        assertEquals(second.getRecipients(), Arrays.asList("b@example.com"));
+        // every copy carries its own recipient and message id over the shared body
+        assertTrue(first.getContent().contains("To: a@example.com"));
+        assertTrue(second.getContent().contains("To: b@example.com"));
+        assertTrue(second.getContent().contains("Subject: Test"));
+        assertNotEquals(messageId(first), messageId(second));
+    }
+
+    @Test
+    public void testBulkTemporaryFailure() throws SendException {
+        PreparedEmail email = sender.prepare(notification(null));
+        try {
+            sender.sendBulk(email, Arrays.asList("a@example.com", "permfail@example.com", "tempfail@example.com", "b@example.com"));
+            fail("Temporary failure not reported");
+        } catch (PartialSendException e) {
+            assertTrue(e.isRetryable());
+            assertEquals(e.getSent(), Arrays.asList("a@example.com"));
+            assertEquals(e.getUnsent(), Arrays.asList("tempfail@example.com", "b@example.com"));
+            assertEquals(e.getInvalid(), Arrays.asList("permfail@example.com"));
+        }
+    }
+
+    @Test
+    public void testBulkPermanentFailure() throws SendException {
+        PreparedEmail email = sender.prepare(notification(null));
+        try {
+            sender.sendBulk(email, Arrays.asList("a@example.com", "permfail@example.com", "toolarge@example.com", "b@example.com"));
+            fail("Permanent failure not reported");
+        } catch (PartialSendException e) {
+            // the message is refused for everyone, but the progress is still reported
+            assertFalse(e.isRetryable());
+            assertEquals(e.getSent(), Arrays.asList("a@example.com"));
+            assertEquals(e.getUnsent(), Arrays.asList("toolarge@example.com", "b@example.com"));
+            assertEquals(e.getInvalid(), Arrays.asList("permfail@example.com"));
+        }
+    }
+
+    @Test(expectedExceptions = PermanentSendException.class)
+    public void testPrepareWithoutMessage() throws SendException {
+        sender.prepare(new Notification.Builder().subject("Test").message(" ").build());
+    }
+
+    @Test
+    public void testSessionReuse() throws IOException, SendException {
+        try (FakeSmtpServer server = new FakeSmtpServer.Builder().start();
+             EmailSender sender = new EmailSender(config(server(server)))) {
+            for (int i = 0; i < 3; i++) {
+                sender.send(notification("user" + i + "@example.com"));
+            }
+            assertEquals(server.getReceivedCount(), 3);
+            assertEquals(server.getConnectionCount(), 1);
+
+            // the same settings keep the pool but drop connections made with the old session
+            sender.refresh(config(server(server)));
+            sender.send(notification("user@example.com"));
+            sender.send(notification("user@example.com"));
+            assertEquals(server.getConnectionCount(), 2);
+        }
+    }
+
+    @Test
+    public void testRefreshPoolSettings() throws IOException, SendException {
+        try (FakeSmtpServer server = new FakeSmtpServer.Builder().start();
+             EmailSender sender = new EmailSender(config(server(server).maxConnections(0)))) {
+            sender.send(notification("user@example.com"));
+            sender.send(notification("user@example.com"));
+            assertEquals(server.getConnectionCount(), 2);
+
+            // pooling turned on by a refresh takes effect
+            sender.refresh(config(server(server).maxConnections(1)));
+            sender.send(notification("user@example.com"));
+            sender.send(notification("user@example.com"));
+            assertEquals(server.getConnectionCount(), 3);
+        }
+    }
+
+    @Test
+    public void testRefreshServer() throws IOException, SendException {
+        try (FakeSmtpServer first = new FakeSmtpServer.Builder().start();
+             FakeSmtpServer second = new FakeSmtpServer.Builder().start();
+             EmailSender sender = new EmailSender(config(server(first)))) {
+            sender.send(notification("user@example.com"));
+            sender.refresh(config(server(second)));
+            sender.send(notification("user@example.com"));
+            assertEquals(first.getReceivedCount(), 1);
+            assertEquals(second.getReceivedCount(), 1);
+        }
+    }
+
+    @Test
+    public void testRefreshKeepsRateLimit() throws IOException, SendException {
+        try (FakeSmtpServer server = new FakeSmtpServer.Builder().start();
+             EmailSender sender = new EmailSender(config(server(server).rate(4).burst(1)))) {
+            sender.send(notification("user@example.com"));
+            // the token taken above is still missing after the refresh
+            sender.refresh(config(server(server).rate(4).burst(1)));
+            long start = System.nanoTime();
+            sender.send(notification("user@example.com"));
+            long elapsed = System.nanoTime() - start;
+            assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(150), "Elapsed " + elapsed);
+        }
+    }
+
+    @Test
+    public void testTextFormat() throws Exception {
+        MimeMessage message = send(format(Format.TEXT, "Hello <b>there</b>"));
+        // a single body, no multipart wrapper
+        assertTrue(message.isMimeType("text/plain"), message.getContentType());
+        // the trailing line break comes from the end of the DATA section
+        assertEquals(((String) message.getContent()).trim(), "Hello <b>there</b>");
+    }
+
+    @Test
+    public void testTextFormatWithAttachment() throws Exception {
+        MimeMessage message = send(new Notification.Builder()
+                .recipient("user@example.com")
+                .subject("Test")
+                .message("Hello")
+                .format(Format.TEXT)
+                .attachments(Arrays.asList(new Attachment.Builder()
+                        .file("report.txt")
+                        .mime("text/plain")
+                        .data("Report".getBytes(StandardCharsets.UTF_8))
+                        .build()))
+                .build());
+        assertTrue(message.isMimeType("multipart/mixed"), message.getContentType());
+        Multipart content = (Multipart) message.getContent();
+        assertEquals(content.getCount(), 2);
+        assertTrue(content.getBodyPart(0).isMimeType("text/plain"));
+        assertEquals(content.getBodyPart(0).getContent(), "Hello");
+        assertEquals(content.getBodyPart(1).getDisposition(), Part.ATTACHMENT);
+        assertEquals(content.getBodyPart(1).getFileName(), "report.txt");
+    }
+
+    @Test
+    public void testDefaultFormat() throws Exception {
+        // without a format the message is rendered as HTML, markup or not
+        assertHtml(send(format(null, "Hello")));
+        assertHtml(send(format(Format.HTML, "Hello")));
+    }
+
+    @Test
+    public void testAutoFormat() throws Exception {
+        assertTrue(send(format(Format.AUTO, "Hello")).isMimeType("text/plain"));
+        assertHtml(send(format(Format.AUTO, "Hello <b>there</b>")));
+    }
+
+    private MimeMessage send(Notification notification) throws Exception {
+        sender.send(notification);
+        List<FakeSmtpServer.Message> messages = server.getMessages();
+        String content = messages.get(messages.size() - 1).getContent();
+        return new MimeMessage(Session.getInstance(new Properties()),
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    private static void assertHtml(MimeMessage message) throws Exception {
+        assertTrue(message.isMimeType("multipart/related"), message.getContentType());
+        Multipart related = (Multipart) message.getContent();
+        assertEquals(related.getCount(), 1);
+        Multipart alternative = (Multipart) related.getBodyPart(0).getContent();
+        assertTrue(related.getBodyPart(0).isMimeType("multipart/alternative"));
+        assertEquals(alternative.getCount(), 2);
+        assertTrue(alternative.getBodyPart(0).isMimeType("text/plain"));
+        assertTrue(alternative.getBodyPart(1).isMimeType("text/html"));
+    }
+
+    private static Notification format(Format format, String message) {
+        return new Notification.Builder()
+                .recipient("user@example.com")
+                .subject("Test")
+                .message(message)
+                .format(format)
+                .build();
+    }
+
+    private static MailServerConfig.Builder server(FakeSmtpServer server) {
+        return new MailServerConfig.Builder()
+                .host("127.0.0.1")
+                .port(server.getPort())
+                .security(MailServerSecurity.NONE)
+                .timeout(5);
+    }
+
+    private static EmailSenderConfig config(MailServerConfig.Builder server) {
+        return new EmailSenderConfig.Builder()
+                .server(server.build())
+                .fromMail("robot@example.com")
+                .build();
+    }
+
+    private static String messageId(FakeSmtpServer.Message message) {
+        for (String line : message.getContent().split("\r\n")) {
+            if (line.startsWith("Message-ID: ")) {
+                return line;
+            }
+        }
+        fail("Message-ID header missing");
+        return null;
+    }
+
+    private static Notification notification(String recipient) {
+        return new Notification.Builder()
+                .recipient(recipient)
+                .subject("Test")
+                .message("Hello")
+                .build();
+    }
+
+}
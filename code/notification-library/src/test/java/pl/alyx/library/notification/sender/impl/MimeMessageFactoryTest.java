@@ -0,0 +1,145 @@
+package pl.alyx.library.notification.sender.impl;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import pl.alyx.library.notification.model.Attachment;
+import pl.alyx.library.notification.model.Format;
+import pl.alyx.library.notification.model.Notification;
+import pl.alyx.library.notification.sender.config.EmailSenderConfig;
+
+import javax.mail.Multipart;
+import javax.mail.Part;
+import javax.mail.Session;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeMessage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.testng.Assert.*;
+
+public class MimeMessageFactoryTest {
+
+    private static final byte[] TEXT = "Attachment text\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BINARY = new byte[256];
+
+    static {
+        for (int i = 0; i < BINARY.length; i++) {
+            BINARY[i] = (byte) i;
+        }
+    }
+
+    private final Session session = Session.getInstance(new Properties());
+    private Path directory;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("attachment");
+        Files.write(directory.resolve("binary.bin"), BINARY);
+        Files.write(directory.resolve("notes.txt"), TEXT);
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        Files.delete(directory.resolve("binary.bin"));
+        Files.delete(directory.resolve("notes.txt"));
+        Files.delete(directory);
+    }
+
+    @DataProvider
+    public Object[][] sources() {
+        ByteBuffer buffer = ByteBuffer.allocate(BINARY.length + 10);
+        buffer.position(5);
+        buffer.put(BINARY);
+        buffer.flip().position(5);
+        return new Object[][]{
+                // ASCII content would be sent as 7bit if the declared encoding was not used
+                {new Attachment.Builder().file("data.bin").data(TEXT).build(), "data.bin", TEXT, "base64"},
+                {new Attachment.Builder().file("buffer.bin").buffer(buffer).build(), "buffer.bin", BINARY, "base64"},
+                {new Attachment.Builder().path(directory.resolve("binary.bin")).build(), "binary.bin", BINARY, "base64"},
+                {new Attachment.Builder().mime("text/plain").path(directory.resolve("notes.txt")).build(), "notes.txt", TEXT, "7bit"},
+                {new Attachment.Builder().file("report.pdf").mime("application/pdf")
+                        .stream(() -> new ByteArrayInputStream(BINARY)).build(), "report.pdf", BINARY, "base64"},
+                {new Attachment.Builder().file("stream.txt").mime("text/plain")
+                        .stream(() -> new ByteArrayInputStream(TEXT)).build(), "stream.txt", TEXT, "7bit"},
+        };
+    }
+
+    @Test(dataProvider = "sources")
+    public void testAttachment(Attachment attachment, String fileName, byte[] content, String encoding) throws Exception {
+        MimeMessage message = parse(MimeMessageFactory.createMessage(session, config(), new Notification.Builder()
+                .recipient("user@example.com")
+                .subject("Test")
+                .message("Hello")
+                .format(Format.TEXT)
+                .attachments(Arrays.asList(attachment))
+                .build()));
+
+        Multipart multipart = (Multipart) message.getContent();
+        assertEquals(multipart.getCount(), 2);
+        MimeBodyPart part = (MimeBodyPart) multipart.getBodyPart(1);
+        assertEquals(part.getFileName(), fileName);
+        assertEquals(part.getDisposition(), Part.ATTACHMENT);
+        assertTrue(part.isMimeType(attachment.getMime() == null ? "application/octet-stream" : attachment.getMime()),
+                part.getContentType());
+        assertEquals(part.getEncoding(), encoding);
+        assertEquals(read(part.getInputStream()), content);
+    }
+
+    @Test
+    public void testStreamOpenedOnWrite() throws Exception {
+        int[] opened = new int[1];
+        Attachment attachment = new Attachment.Builder()
+                .file("stream.bin")
+                .stream(() -> {
+                    opened[0]++;
+                    return new ByteArrayInputStream(BINARY);
+                })
+                .build();
+        MimeMessage message = MimeMessageFactory.createMessage(session, config(), new Notification.Builder()
+                .recipient("user@example.com")
+                .message("Hello")
+                .attachments(Arrays.asList(attachment))
+                .build());
+        // the declared encoding is used, the stream is not scanned before the message is written
+        message.saveChanges();
+        assertEquals(opened[0], 0);
+        message.writeTo(new ByteArrayOutputStream());
+        assertEquals(opened[0], 1);
+    }
+
+    private MimeMessage parse(MimeMessage message) throws Exception {
+        message.saveChanges();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeTo(out);
+        return new MimeMessage(session, new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static EmailSenderConfig config() {
+        return new EmailSenderConfig.Builder()
+                .fromMail("robot@example.com")
+                .build();
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = input.read(buffer)) > 0) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        }
+    }
+
+}
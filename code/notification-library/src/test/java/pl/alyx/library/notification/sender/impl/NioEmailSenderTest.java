@@ -0,0 +1,199 @@
+package pl.alyx.library.notification.sender.impl;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import pl.alyx.library.notification.exception.PartialSendException;
+import pl.alyx.library.notification.exception.PermanentSendException;
+import pl.alyx.library.notification.exception.RetryableSendException;
+import pl.alyx.library.notification.exception.SendException;
+import pl.alyx.library.notification.model.Notification;
+import pl.alyx.library.notification.sender.config.EmailSenderConfig;
+import pl.alyx.library.notification.sender.config.MailServerConfig;
+import pl.alyx.library.notification.sender.config.MailServerSecurity;
+import pl.alyx.library.notification.testing.FakeSmtpServer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class NioEmailSenderTest {
+
+    @DataProvider
+    public Object[][] pipelining() {
+        return new Object[][]{{true}, {false}};
+    }
+
+    @Test(dataProvider = "pipelining")
+    public void testDelivery(boolean pipelining) throws IOException, SendException {
+        try (FakeSmtpServer server = new FakeSmtpServer.Builder().pipelining(pipelining).start();
+             NioEmailSender sender = sender(config(server))) {
+            sender.send(new Notification.Builder()
+                    .recipient("user@example.com")
+                    .cc(Arrays.asList("cc@example.com"))
+                    .bcc(Arrays.asList("bcc@example.com"))
+                    .subject("Test")
+                    .message("Hello")
+                    .build());
+
+            List<FakeSmtpServer.Message> messages = server.getMessages();
+            assertEquals(messages.size(), 1);
+            FakeSmtpServer.Message message = messages.get(0);
+            assertEquals(message.getFrom(), "robot@example.com");
+            assertEquals(message.getRecipients(), Arrays.asList("user@example.com", "cc@example.com", "bcc@example.com"));
+            assertTrue(message.getContent().contains("Subject: Test"));
+            assertFalse(message.getContent().contains("bcc@example.com"));
+            assertEquals(server.getPipelinedCount() > 0, pipelining);
+        }
+    }
+
+    @Test(dataProvider = "pipelining")
+    public void testPartialFailure(boolean pipelining) throws IOException {
+        try (FakeSmtpServer server = new FakeSmtpServer.Builder().pipelining(pipelining).start();
+             NioEmailSender sender = sender(config(server))) {
+            try {
+                sender.send(new Notification.Builder()
+                        .recipient("user@example.com")
+                        .cc(Arrays.asList("tempfail@example.com", "permfail@example.com", "other@example.com"))
+                        .subject("Test")
+                        .message("Hello")
+                        .build());
+                fail("Partial failure not reported");
+            } catch (PartialSendException e) {
+                assertEquals(e.getSent(), Arrays.asList("user@example.com", "other@example.com"));
+                assertEquals(e.getUnsent(), Arrays.asList("tempfail@example.com"));
+                assertEquals(e.getInvalid(), Arrays.asList("permfail@example.com"));
+            } catch (SendException e) {
+                fail("Unexpected failure", e);
+            }
+            assertEquals(server.getMessages().get(0).getRecipients(), Arrays.asList("user@example.com", "other@example.com"));
+        }
+    }
+
+    @Test(dataProvider = "pipelining")
+    public void testAllRecipientsRejected(boolean pipelining) throws IOException, SendException {
+        try (FakeSmtpServer server = new FakeSmtpServer.Builder().pipelining(pipelining).start();
+             NioEmailSender sender = sender(config(server))) {
+            try {
+                sender.send(notification("permfail@example.com"));
+                fail("Rejection not reported");
+            } catch (PermanentSendException e) {
+                // nothing was queued
+            }
+            // the session is reset and stays usable
+            sender.send(notification("user@example.com"));
+            assertEquals(server.getReceivedCount(), 1);
+            assertEquals(server.getConnectionCount(), 1);
+        }
+    }
+
+    @Test(dataProvider = "pipelining")
+    public void testDroppedConnection(boolean pipelining) throws IOException, SendException {
+        try (FakeSmtpServer server = new FakeSmtpServer.Builder().pipelining(pipelining).start();
+             NioEmailSender sender = sender(config(server))) {
+            try {
+                sender.send(notification("drop@example.com"));
+                fail("Dropped connection not reported");
+            } catch (RetryableSendException e) {
+                // expected
+            }
+            sender.send(notification("user@example.com"));
+            assertEquals(server.getReceivedCount(), 1);
+            assertEquals(server.getConnectionCount(), 2);
+        }
+    }
+
+    @Test(dataProvider = "pipelining")
+    public void testSessionReuse(boolean pipelining) throws IOException, SendException {
+        try (FakeSmtpServer server = new FakeSmtpServer.Builder().pipelining(pipelining).start();
+             NioEmailSender sender = sender(config(server).maxConnections(1).maxMessages(3))) {
+            for (int i = 0; i < 5; i++) {
+                sender.send(notification("user" + i + "@example.com"));
+            }
+            assertEquals(server.getReceivedCount(), 5);
+            // the first connection is retired after three messages
+            assertEquals(server.getConnectionCount(), 2);
+        }
+    }
+
+    @Test
+    public void testClosingFailsPendingMessages() throws Exception {
+        try (FakeSmtpServer server = new FakeSmtpServer.Builder().latency(50, TimeUnit.MILLISECONDS).start()) {
+            NioEmailSender sender = sender(config(server).maxConnections(1));
+            CompletableFuture<Void> running = sender.sendAsync(notification("first@example.com"));
+            CompletableFuture<Void> queued = sender.sendAsync(notification("second@example.com"));
+            CompletableFuture<Void> last = sender.sendAsync(notification("third@example.com"));
+            sender.close();
+
+            // the transaction on the wire is finished, the queued ones are failed
+            running.get(1, TimeUnit.SECONDS);
+            for (CompletableFuture<Void> future : Arrays.asList(queued, last)) {
+                try {
+                    future.get(1, TimeUnit.SECONDS);
+                    fail("Queued message sent after close");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof RetryableSendException, String.valueOf(e.getCause()));
+                }
+            }
+            assertEquals(server.getReceivedCount(), 1);
+
+            CompletableFuture<Void> rejected = sender.sendAsync(notification("late@example.com"));
+            assertTrue(rejected.isCompletedExceptionally());
+        }
+    }
+
+    @Test(expectedExceptions = PermanentSendException.class)
+    public void testStartTlsRequired() throws IOException, SendException {
+        try (FakeSmtpServer server = new FakeSmtpServer.Builder().start();
+             NioEmailSender sender = sender(config(server).security(MailServerSecurity.TLS))) {
+            sender.send(notification("user@example.com"));
+        }
+    }
+
+    @Test
+    public void testStartTlsRefused() throws IOException, SendException {
+        try (FakeSmtpServer server = new FakeSmtpServer.Builder().startTls(true).start()) {
+            try (NioEmailSender sender = sender(config(server).security(MailServerSecurity.TLS))) {
+                sender.send(notification("user@example.com"));
+                fail("Message sent without TLS");
+            } catch (RetryableSendException e) {
+                // 454 is a temporary refusal
+            }
+            // an insecure configuration continues in plain text
+            try (NioEmailSender sender = sender(config(server)
+                    .security(MailServerSecurity.TLS)
+                    .insecure(true))) {
+                sender.send(notification("user@example.com"));
+            }
+            assertEquals(server.getReceivedCount(), 1);
+        }
+    }
+
+    private static MailServerConfig.Builder config(FakeSmtpServer server) {
+        return new MailServerConfig.Builder()
+                .host("127.0.0.1")
+                .port(server.getPort())
+                .security(MailServerSecurity.NONE)
+                .timeout(5);
+    }
+
+    private static NioEmailSender sender(MailServerConfig.Builder server) {
+        return new NioEmailSender(new EmailSenderConfig.Builder()
+                .server(server.build())
+                .fromMail("robot@example.com")
+                .build(), 1);
+    }
+
+    private static Notification notification(String recipient) {
+        return new Notification.Builder()
+                .recipient(recipient)
+                .subject("Test")
+                .message("Hello")
+                .build();
+    }
+
+}
@@ -0,0 +1,46 @@
+package pl.alyx.library.notification.sender.pool;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class RateLimiterTest {
+
+    @Test
+    public void testBurst() {
+        RateLimiter limiter = new RateLimiter(10, 5);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(limiter.reserve(), 0L);
+        }
+        // the sixth message has to wait for about one interval
+        long wait = limiter.reserve();
+        assertTrue(wait > TimeUnit.MILLISECONDS.toNanos(50), "Wait " + wait);
+        assertTrue(wait <= TimeUnit.MILLISECONDS.toNanos(100), "Wait " + wait);
+        assertTrue(limiter.reserve() > wait);
+    }
+
+    @Test
+    public void testRate() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(200, 1);
+        long start = System.nanoTime();
+        for (int i = 0; i < 21; i++) {
+            limiter.acquire();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(95), "Elapsed " + elapsed);
+    }
+
+    @Test
+    public void testDisabled() {
+        assertNull(RateLimiter.of(0, 1));
+        assertNotNull(RateLimiter.of(0.5, 1));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidBurst() {
+        new RateLimiter(1, 0);
+    }
+
+}
@@ -0,0 +1,239 @@
+package pl.alyx.library.notification.sender.pool;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import pl.alyx.library.notification.sender.config.MailServerConfig;
+import pl.alyx.library.notification.sender.config.MailServerSecurity;
+import pl.alyx.library.notification.testing.FakeSmtpServer;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.testng.Assert.*;
+
+public class TransportPoolTest {
+
+    private FakeSmtpServer server;
+    private Session session;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        server = new FakeSmtpServer.Builder().start();
+        Properties properties = new Properties();
+        properties.put("mail.transport.protocol", "smtp");
+        properties.put("mail.smtp.host", "127.0.0.1");
+        properties.put("mail.smtp.port", server.getPort());
+        properties.put("mail.smtp.timeout", "5000");
+        session = Session.getInstance(properties);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void testBorrowAndRelease() throws MessagingException {
+        try (TransportPool pool = new TransportPool(config().build(), () -> session)) {
+            PooledTransport first = pool.borrow();
+            pool.release(first, true);
+            assertEquals(pool.getIdleCount(), 1);
+
+            PooledTransport second = pool.borrow();
+            assertSame(second, first);
+            assertEquals(pool.getIdleCount(), 0);
+
+            // a connection that saw an error is closed instead of pooled
+            pool.release(second, false);
+            assertEquals(pool.getIdleCount(), 0);
+            assertFalse(second.getTransport().isConnected());
+
+            assertNotSame(pool.borrow(), first);
+            assertEquals(server.getConnectionCount(), 2);
+        }
+    }
+
+    @Test
+    public void testWithoutPooling() throws MessagingException {
+        try (TransportPool pool = new TransportPool(config().maxConnections(0).build(), () -> session)) {
+            PooledTransport first = pool.borrow();
+            PooledTransport second = pool.borrow();
+            pool.release(first, true);
+            pool.release(second, true);
+            assertEquals(pool.getIdleCount(), 0);
+            assertFalse(first.getTransport().isConnected());
+            assertEquals(server.getConnectionCount(), 2);
+        }
+    }
+
+    @Test
+    public void testMaxConnections() throws Exception {
+        try (TransportPool pool = new TransportPool(config().maxConnections(1).build(), () -> session)) {
+            PooledTransport first = pool.borrow();
+            CompletableFuture<PooledTransport> waiting = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return pool.borrow();
+                } catch (MessagingException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            try {
+                waiting.get(200, TimeUnit.MILLISECONDS);
+                fail("Second connection borrowed over the limit");
+            } catch (TimeoutException e) {
+                // blocked until the first one comes back
+            }
+            pool.release(first, true);
+            assertSame(waiting.get(1, TimeUnit.SECONDS), first);
+            assertEquals(server.getConnectionCount(), 1);
+        }
+    }
+
+    @Test
+    public void testBorrowTimeout() throws MessagingException {
+        try (TransportPool pool = new TransportPool(config().maxConnections(1).timeout(1).build(), () -> session)) {
+            pool.borrow();
+            long start = System.nanoTime();
+            try {
+                pool.borrow();
+                fail("Second connection borrowed over the limit");
+            } catch (MessagingException e) {
+                assertTrue(e.getMessage().contains("Timeout"), e.getMessage());
+            }
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900));
+        }
+    }
+
+    @Test
+    public void testMaxMessages() throws MessagingException {
+        try (TransportPool pool = new TransportPool(config().maxMessages(2).build(), () -> session)) {
+            PooledTransport pooled = pool.borrow();
+            send(pooled);
+            pool.release(pooled, true);
+            assertSame(pool.borrow(), pooled);
+            send(pooled);
+            // retired after the second message
+            pool.release(pooled, true);
+            assertEquals(pool.getIdleCount(), 0);
+            assertFalse(pooled.getTransport().isConnected());
+            assertEquals(server.getReceivedCount(), 2);
+        }
+    }
+
+    @Test
+    public void testIdleEviction() throws Exception {
+        try (TransportPool pool = new TransportPool(config().idleTimeout(1).build(), () -> session)) {
+            PooledTransport pooled = pool.borrow();
+            pool.release(pooled, true);
+            assertEquals(pool.getIdleCount(), 1);
+            // the evictor runs every second and removes connections idle for a second or more
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (pool.getIdleCount() > 0 && System.nanoTime() < end) {
+                Thread.sleep(50);
+            }
+            assertEquals(pool.getIdleCount(), 0);
+            assertFalse(pooled.getTransport().isConnected());
+        }
+    }
+
+    @Test
+    public void testValidation() throws MessagingException {
+        try (TransportPool pool = new TransportPool(config().validationInterval(0).build(), () -> session)) {
+            PooledTransport first = pool.borrow();
+            pool.release(first, true);
+            // still alive, NOOP succeeds
+            assertSame(pool.borrow(), first);
+            pool.release(first, true);
+
+            server.dropConnections();
+            PooledTransport second = pool.borrow();
+            assertNotSame(second, first);
+            send(second);
+            assertEquals(server.getConnectionCount(), 2);
+        }
+    }
+
+    @Test
+    public void testClear() throws MessagingException {
+        try (TransportPool pool = new TransportPool(config().build(), () -> session)) {
+            PooledTransport idle = pool.borrow();
+            PooledTransport borrowed = pool.borrow();
+            pool.release(idle, true);
+            pool.clear();
+            assertEquals(pool.getIdleCount(), 0);
+            assertFalse(idle.getTransport().isConnected());
+
+            // connections opened before the clear are not pooled again
+            pool.release(borrowed, true);
+            assertEquals(pool.getIdleCount(), 0);
+            assertFalse(borrowed.getTransport().isConnected());
+        }
+    }
+
+    @Test
+    public void testClose() throws MessagingException {
+        TransportPool pool = new TransportPool(config().build(), () -> session);
+        PooledTransport idle = pool.borrow();
+        PooledTransport borrowed = pool.borrow();
+        pool.release(idle, true);
+        pool.close();
+        assertEquals(pool.getIdleCount(), 0);
+        assertFalse(idle.getTransport().isConnected());
+
+        pool.release(borrowed, true);
+        assertEquals(pool.getIdleCount(), 0);
+        assertFalse(borrowed.getTransport().isConnected());
+        try {
+            pool.borrow();
+            fail("Borrowed from a closed pool");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testConfigValidation() {
+        assertInvalid(config().maxConnections(-1));
+        assertInvalid(config().maxMessages(-1));
+        assertInvalid(config().idleTimeout(-1));
+        assertInvalid(config().validationInterval(-1));
+        config().maxConnections(0).maxMessages(0).idleTimeout(0).validationInterval(0).build();
+    }
+
+    private MailServerConfig.Builder config() {
+        return new MailServerConfig.Builder()
+                .host("127.0.0.1")
+                .port(server.getPort())
+                .security(MailServerSecurity.NONE)
+                .timeout(5);
+    }
+
+    private void send(PooledTransport pooled) throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress("robot@example.com"));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress("user@example.com"));
+        message.setSubject("Test");
+        message.setText("Hello");
+        message.saveChanges();
+        pooled.send(message, message.getAllRecipients());
+    }
+
+    private static void assertInvalid(MailServerConfig.Builder builder) {
+        try {
+            builder.build();
+            fail("Invalid configuration accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+package pl.alyx.library.notification.sender.smtp;
+
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.testng.Assert.*;
+
+public class SmtpTransactionTest {
+
+    private static String encode(String content) {
+        return new String(SmtpTransaction.encode(content.getBytes(StandardCharsets.US_ASCII)), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void testEncode() {
+        assertEquals(encode(""), ".\r\n");
+        assertEquals(encode("Hello"), "Hello\r\n.\r\n");
+        assertEquals(encode("Hello\r\n"), "Hello\r\n.\r\n");
+        assertEquals(encode("a\nb\rc\r\nd"), "a\r\nb\r\nc\r\nd\r\n.\r\n");
+        assertEquals(encode(".start\r\nmiddle.\r\n.\r\n..two"), "..start\r\nmiddle.\r\n..\r\n...two\r\n.\r\n");
+        assertEquals(encode("end\r"), "end\r\n.\r\n");
+    }
+
+    @Test
+    public void testCommands() {
+        SmtpTransaction transaction = new SmtpTransaction("from@localhost",
+                Arrays.asList("a@localhost", "b@localhost"), new byte[0]);
+        assertEquals(new String(transaction.commands(0, 3).array(), StandardCharsets.US_ASCII),
+                "MAIL FROM:<from@localhost>\r\nRCPT TO:<a@localhost>\r\nRCPT TO:<b@localhost>\r\nDATA\r\n");
+        assertEquals(new String(transaction.commands(2, 2).array(), StandardCharsets.US_ASCII),
+                "RCPT TO:<b@localhost>\r\n");
+    }
+
+}
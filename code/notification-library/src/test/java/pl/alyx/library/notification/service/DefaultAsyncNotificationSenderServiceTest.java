@@ -0,0 +1,159 @@
+package pl.alyx.library.notification.service;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import pl.alyx.library.notification.model.Notification;
+import pl.alyx.library.notification.sender.NotificationSender;
+import pl.alyx.library.notification.service.DefaultAsyncNotificationSenderService.OverflowPolicy;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.*;
+
+public class DefaultAsyncNotificationSenderServiceTest {
+
+    private CountDownLatch release;
+    private CountDownLatch started;
+    private List<String> threads;
+
+    @BeforeMethod
+    public void setUp() {
+        release = new CountDownLatch(1);
+        started = new CountDownLatch(1);
+        threads = new CopyOnWriteArrayList<>();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        release.countDown();
+    }
+
+    // one worker and one queue slot, the first notification holds the worker until release
+    private DefaultAsyncNotificationSenderService service(OverflowPolicy overflowPolicy, int shutdownTimeout) {
+        NotificationSender sender = notification -> {
+            threads.add(Thread.currentThread().getName());
+            if (!notification.getId().equals("n1")) {
+                return;
+            }
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        return new DefaultAsyncNotificationSenderService.Builder()
+                .service(new DefaultNotificationSenderService.Builder().addSender(sender).build())
+                .workers(1)
+                .capacity(1)
+                .overflowPolicy(overflowPolicy)
+                .shutdownTimeout(shutdownTimeout)
+                .build();
+    }
+
+    private static Notification notification(String id) {
+        return new Notification.Builder().id(id).message("Hello").build();
+    }
+
+    private static Throwable failure(CompletableFuture<DeliveryResult> future) throws InterruptedException {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Delivery should have failed");
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (CancellationException e) {
+            return e;
+        } catch (TimeoutException e) {
+            fail("Future was never completed");
+            return null;
+        }
+    }
+
+    private void fill(DefaultAsyncNotificationSenderService service) throws InterruptedException {
+        service.send(notification("n1"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        service.send(notification("n2"));
+        assertEquals(service.getQueueSize(), 1);
+    }
+
+    private static void awaitBlocked(Thread thread) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+            assertTrue(System.nanoTime() < end, "Producer did not block");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        try (DefaultAsyncNotificationSenderService service = service(OverflowPolicy.BLOCK, 5)) {
+            fill(service);
+            AtomicReference<CompletableFuture<DeliveryResult>> blocked = new AtomicReference<>();
+            Thread producer = new Thread(() -> blocked.set(service.send(notification("n3"))));
+            producer.start();
+            awaitBlocked(producer);
+            assertNull(blocked.get());
+
+            release.countDown();
+            producer.join(5000);
+            assertTrue(blocked.get().get(5, TimeUnit.SECONDS).isSuccess());
+            assertEquals(threads.size(), 3);
+        }
+    }
+
+    @Test
+    public void testReject() throws Exception {
+        try (DefaultAsyncNotificationSenderService service = service(OverflowPolicy.REJECT, 5)) {
+            fill(service);
+            assertTrue(failure(service.send(notification("n3"))) instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void testCallerRuns() throws Exception {
+        try (DefaultAsyncNotificationSenderService service = service(OverflowPolicy.CALLER_RUNS, 5)) {
+            fill(service);
+            assertTrue(service.send(notification("n3")).get(5, TimeUnit.SECONDS).isSuccess());
+            assertEquals(threads.get(1), Thread.currentThread().getName());
+        }
+    }
+
+    @Test
+    public void testCloseCancelsQueued() throws Exception {
+        DefaultAsyncNotificationSenderService service = service(OverflowPolicy.BLOCK, 0);
+        CompletableFuture<DeliveryResult> running = service.send(notification("n1"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<DeliveryResult> queued = service.send(notification("n2"));
+        service.close();
+
+        assertTrue(running.get(5, TimeUnit.SECONDS).isSuccess());
+        assertTrue(failure(queued) instanceof CancellationException);
+        assertTrue(failure(service.send(notification("n3"))) instanceof RejectedExecutionException);
+    }
+
+    @Test
+    public void testCloseWhileBlocked() throws Exception {
+        DefaultAsyncNotificationSenderService service = service(OverflowPolicy.BLOCK, 0);
+        fill(service);
+        AtomicReference<CompletableFuture<DeliveryResult>> blocked = new AtomicReference<>();
+        Thread producer = new Thread(() -> blocked.set(service.send(notification("n3"))));
+        producer.start();
+        awaitBlocked(producer);
+        // closing frees the queue slot the producer waits for, but no worker is left to take the task
+        service.close();
+        producer.join(5000);
+        assertTrue(failure(blocked.get()) instanceof RejectedExecutionException);
+    }
+
+}
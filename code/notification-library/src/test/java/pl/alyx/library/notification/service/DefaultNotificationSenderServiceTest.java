@@ -0,0 +1,335 @@
+package pl.alyx.library.notification.service;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import pl.alyx.library.notification.exception.PermanentSendException;
+import pl.alyx.library.notification.exception.RetryableSendException;
+import pl.alyx.library.notification.exception.SendException;
+import pl.alyx.library.notification.model.Notification;
+import pl.alyx.library.notification.repository.config.FileRepositoryConfig;
+import pl.alyx.library.notification.repository.impl.FileRepository;
+import pl.alyx.library.notification.sender.NotificationSender;
+import pl.alyx.library.notification.service.config.DeduplicationConfig;
+import pl.alyx.library.notification.service.config.RetryConfig;
+import pl.alyx.library.notification.service.retry.RetryListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.*;
+
+public class DefaultNotificationSenderServiceTest {
+
+    private Path directory;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("notification-service");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private FileRepository repository() {
+        return new FileRepository(new FileRepositoryConfig.Builder()
+                .path(directory.toString())
+                .build());
+    }
+
+    @Test
+    public void testCloseKeepsPendingRetry() throws Exception {
+        AtomicInteger cancelled = new AtomicInteger();
+        NotificationSender sender = notification -> {
+            throw new RetryableSendException("Server busy");
+        };
+        DefaultNotificationSenderService service = new DefaultNotificationSenderService.Builder()
+                .addSender(sender)
+                .addRepository(repository())
+                .retry(new RetryConfig.Builder()
+                        .initialDelay(Duration.ofSeconds(10))
+                        .maxDelay(Duration.ofSeconds(10))
+                        .build())
+                .retryListener(new RetryListener() {
+                    @Override
+                    public void onCancel(NotificationSender sender, Notification notification, int attempts) {
+                        cancelled.incrementAndGet();
+                    }
+                })
+                .build();
+        Notification notification = new Notification.Builder().id("n1").message("Hello").build();
+        DeliveryResult result = service.deliver(notification);
+        assertFalse(result.isFailed());
+        assertEquals(service.getPendingRetryCount(), 1);
+        service.close();
+        assertEquals(cancelled.get(), 1);
+
+        try (FileRepository repository = repository()) {
+            List<Notification> pending = repository.findPending();
+            assertEquals(pending.size(), 1);
+            assertEquals(pending.get(0).getId(), "n1");
+        }
+    }
+
+    @Test
+    public void testGiveUpAcknowledges() throws Exception {
+        NotificationSender sender = notification -> {
+            throw new RetryableSendException("Server busy");
+        };
+        CountDownLatch failed = new CountDownLatch(1);
+        DefaultNotificationSenderService service = new DefaultNotificationSenderService.Builder()
+                .addSender(sender)
+                .addRepository(repository())
+                .retry(new RetryConfig.Builder()
+                        .maxAttempts(2)
+                        .initialDelay(Duration.ofMillis(10))
+                        .tickDuration(Duration.ofMillis(5))
+                        .build())
+                .retryListener(new RetryListener() {
+                    @Override
+                    public void onFailure(NotificationSender sender, Notification notification, int attempts, SendException exception) {
+                        failed.countDown();
+                    }
+                })
+                .build();
+        service.deliver(new Notification.Builder().id("n1").message("Hello").build());
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        service.close();
+
+        try (FileRepository repository = repository()) {
+            assertTrue(repository.findPending().isEmpty());
+        }
+    }
+
+    @Test
+    public void testResubmitAfterFailure() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        NotificationSender sender = notification -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new RetryableSendException("Server busy");
+            }
+        };
+        try (DefaultNotificationSenderService service = new DefaultNotificationSenderService.Builder()
+                .addSender(sender)
+                .deduplication(new DeduplicationConfig.Builder().expectedIds(1000).build())
+                .build()) {
+            Notification notification = new Notification.Builder().id("n1").message("Hello").build();
+            assertTrue(service.deliver(notification).isFailed());
+            // the failed attempt did not record the id, so the resubmitted copy is sent
+            DeliveryResult result = service.deliver(notification);
+            assertFalse(result.isDuplicate());
+            assertTrue(result.isSuccess());
+            assertTrue(service.deliver(notification).isDuplicate());
+            assertEquals(calls.get(), 2);
+        }
+    }
+
+    @Test
+    public void testParallelSendersRunConcurrently() throws Exception {
+        int count = 3;
+        CountDownLatch started = new CountDownLatch(count);
+        List<NotificationSender> senders = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            senders.add(notification -> {
+                started.countDown();
+                // only returns if every sender is running at the same time
+                await(started, "Senders ran one after another");
+            });
+        }
+        try (DefaultNotificationSenderService service = parallel(senders)) {
+            DeliveryResult result = service.deliver(new Notification.Builder().id("n1").message("Hello").build());
+            assertTrue(result.isSuccess());
+            assertEquals(result.getResults().size(), count);
+        }
+    }
+
+    @Test
+    public void testParallelSenderFailures() throws Exception {
+        CountDownLatch fastDone = new CountDownLatch(1);
+        NotificationSender failing = notification -> {
+            throw new PermanentSendException("User unknown");
+        };
+        NotificationSender slow = notification -> {
+            // held back until the last sender finished, so it cannot be blocking it
+            await(fastDone, "Fast sender never finished");
+        };
+        NotificationSender fast = notification -> fastDone.countDown();
+        try (DefaultNotificationSenderService service = parallel(Arrays.asList(failing, slow, fast))) {
+            DeliveryResult result = service.deliver(new Notification.Builder().id("n1").message("Hello").build());
+            // unlike sequential delivery, a failure does not stop the other senders
+            List<SenderResult> results = result.getResults();
+            assertEquals(results.size(), 3);
+            assertSame(results.get(0).getSender(), failing);
+            assertTrue(results.get(0).getException() instanceof PermanentSendException);
+            assertSame(results.get(1).getSender(), slow);
+            assertTrue(results.get(1).isSuccess());
+            assertSame(results.get(2).getSender(), fast);
+            assertTrue(results.get(2).isSuccess());
+            assertTrue(result.isFailed());
+        }
+    }
+
+    @Test
+    public void testParallelSenderRuntimeFailure() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        NotificationSender sender = notification -> calls.incrementAndGet();
+        NotificationSender broken = notification -> {
+            throw new IllegalStateException("Broken sender");
+        };
+        try (DefaultNotificationSenderService service = parallel(Arrays.asList(sender, broken, sender))) {
+            try {
+                service.deliver(new Notification.Builder().id("n1").message("Hello").build());
+                fail("Runtime failure hidden");
+            } catch (IllegalStateException e) {
+                assertEquals(e.getMessage(), "Broken sender");
+            }
+            // thrown only after the other senders finished
+            assertEquals(calls.get(), 2);
+        }
+    }
+
+    @Test
+    public void testOwnedExecutorShutdown() throws Exception {
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        NotificationSender sender = notification -> threads.add(Thread.currentThread());
+        DefaultNotificationSenderService service = parallel(Arrays.asList(sender, sender, sender));
+        service.deliver(new Notification.Builder().id("n1").message("Hello").build());
+        assertEquals(threads.size(), 3);
+        service.close();
+        // the first sender runs on the calling thread, the others on the service's own executor
+        threads.remove(Thread.currentThread());
+        assertEquals(threads.size(), 2);
+        for (Thread thread : threads) {
+            thread.join(5000);
+            assertFalse(thread.isAlive(), thread.getName());
+        }
+
+        // an executor passed in belongs to the caller and is left running
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            new DefaultNotificationSenderService.Builder()
+                    .addSender(sender)
+                    .addSender(sender)
+                    .parallel(true)
+                    .executor(executor)
+                    .build()
+                    .close();
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void await(CountDownLatch latch, String message) throws RetryableSendException {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) {
+                throw new RetryableSendException(message);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RetryableSendException(message, e);
+        }
+    }
+
+    private static DefaultNotificationSenderService parallel(List<NotificationSender> senders) {
+        DefaultNotificationSenderService.Builder builder = new DefaultNotificationSenderService.Builder().parallel(true);
+        for (NotificationSender sender : senders) {
+            builder.addSender(sender);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testConcurrentCopies() throws Exception {
+        Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+        NotificationSender sender = notification -> {
+            calls.computeIfAbsent(notification.getId(), id -> new AtomicInteger()).incrementAndGet();
+            Thread.yield();
+        };
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (DefaultNotificationSenderService service = new DefaultNotificationSenderService.Builder()
+                .addSender(sender)
+                .deduplication(new DeduplicationConfig.Builder().expectedIds(1000).build())
+                .build()) {
+            for (int i = 0; i < 200; i++) {
+                Notification notification = new Notification.Builder().id("n" + i).message("Hello").build();
+                CyclicBarrier barrier = new CyclicBarrier(threads);
+                List<Future<DeliveryResult>> futures = new ArrayList<>();
+                for (int j = 0; j < threads; j++) {
+                    futures.add(executor.submit(() -> {
+                        barrier.await();
+                        return service.deliver(notification);
+                    }));
+                }
+                int delivered = 0;
+                for (Future<DeliveryResult> future : futures) {
+                    if (!future.get().isDuplicate()) {
+                        delivered++;
+                    }
+                }
+                assertEquals(delivered, 1);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(calls.size(), 200);
+        for (AtomicInteger count : calls.values()) {
+            assertEquals(count.get(), 1);
+        }
+    }
+
+    @Test
+    public void testSuspectedDuplicate() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        NotificationSender sender = notification -> calls.incrementAndGet();
+        DeduplicationConfig config = new DeduplicationConfig.Builder()
+                .expectedIds(1000)
+                .path(directory.resolve("dedup.bin").toString())
+                .build();
+        Notification notification = new Notification.Builder().id("n1").message("Hello").build();
+        try (DefaultNotificationSenderService service = new DefaultNotificationSenderService.Builder()
+                .addSender(sender)
+                .deduplication(config)
+                .build()) {
+            assertTrue(service.deliver(notification).isSuccess());
+        }
+        try (DefaultNotificationSenderService service = new DefaultNotificationSenderService.Builder()
+                .addSender(sender)
+                .deduplication(config)
+                .build()) {
+            // only the saved Bloom filter knows the id, a match there is reported instead of claimed as sent
+            DeliveryResult result = service.deliver(notification);
+            assertTrue(result.isDuplicate());
+            assertTrue(result.isSuspectedDuplicate());
+            assertFalse(result.isSuccess());
+            assertEquals(service.getSuspectedDuplicateCount(), 1);
+        }
+        assertEquals(calls.get(), 1);
+    }
+
+}
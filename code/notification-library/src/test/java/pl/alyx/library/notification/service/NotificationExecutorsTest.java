@@ -0,0 +1,48 @@
+package pl.alyx.library.notification.service;
+
+import org.testng.annotations.Test;
+import pl.alyx.library.notification.model.Notification;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class NotificationExecutorsTest {
+
+    @Test
+    public void testSendExecutor() throws Exception {
+        ExecutorService executor = NotificationExecutors.newSendExecutor("test-send");
+        try {
+            String name = executor.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+            assertTrue(name.startsWith("test-send-"), name);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testVirtualThreadsFallback() throws Exception {
+        // without the Java 21 layer the service runs on platform threads
+        CopyOnWriteArrayList<String> threads = new CopyOnWriteArrayList<>();
+        DefaultNotificationSenderService service = new DefaultNotificationSenderService.Builder()
+                .addSender(notification -> threads.add(Thread.currentThread().getName()))
+                .build();
+        DefaultAsyncNotificationSenderService async = new DefaultAsyncNotificationSenderService.Builder()
+                .service(service)
+                .virtualThreads(true)
+                .workers(1000)
+                .build();
+        try {
+            for (int i = 0; i < 10; i++) {
+                assertTrue(async.send(new Notification.Builder().message("Hello").build()).get(5, TimeUnit.SECONDS).isSuccess());
+            }
+        } finally {
+            async.close();
+        }
+        assertEquals(threads.size(), 10);
+        assertTrue(threads.get(0).startsWith("notification-sender-"), threads.get(0));
+    }
+
+}
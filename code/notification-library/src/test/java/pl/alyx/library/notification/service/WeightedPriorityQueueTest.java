@@ -0,0 +1,73 @@
+package pl.alyx.library.notification.service;
+
+import org.testng.annotations.Test;
+import pl.alyx.library.notification.model.Priority;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class WeightedPriorityQueueTest {
+
+    private static WeightedPriorityQueue<Priority> queue(int capacity) {
+        return new WeightedPriorityQueue<>(capacity, new int[]{8, 3, 1}, priority -> priority);
+    }
+
+    @Test
+    public void testWeightedShares() {
+        WeightedPriorityQueue<Priority> queue = queue(1000);
+        for (int i = 0; i < 100; i++) {
+            queue.add(Priority.LOW);
+            queue.add(Priority.NORMAL);
+            queue.add(Priority.HIGH);
+        }
+        Map<Priority, Integer> counts = new EnumMap<>(Priority.class);
+        for (int i = 0; i < 24; i++) {
+            counts.merge(queue.poll(), 1, Integer::sum);
+        }
+        assertEquals(counts.get(Priority.HIGH), Integer.valueOf(16));
+        assertEquals(counts.get(Priority.NORMAL), Integer.valueOf(6));
+        // the lowest level is served even while higher levels are backlogged
+        assertEquals(counts.get(Priority.LOW), Integer.valueOf(2));
+        assertEquals(queue.size(), 276);
+    }
+
+    @Test
+    public void testSingleLevel() {
+        WeightedPriorityQueue<Priority> queue = queue(10);
+        queue.add(Priority.LOW);
+        queue.add(Priority.LOW);
+        assertEquals(queue.peek(), Priority.LOW);
+        assertEquals(queue.poll(), Priority.LOW);
+        queue.add(Priority.HIGH);
+        assertEquals(queue.poll(), Priority.HIGH);
+        assertEquals(queue.poll(), Priority.LOW);
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testCapacity() throws InterruptedException {
+        WeightedPriorityQueue<Priority> queue = queue(2);
+        assertTrue(queue.offer(Priority.LOW));
+        assertTrue(queue.offer(Priority.HIGH));
+        assertFalse(queue.offer(Priority.HIGH));
+        assertFalse(queue.offer(Priority.HIGH, 10, TimeUnit.MILLISECONDS));
+        assertEquals(queue.remainingCapacity(), 0);
+        List<Priority> drained = new ArrayList<>();
+        assertEquals(queue.drainTo(drained), 2);
+        assertEquals(drained.get(0), Priority.HIGH);
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testNullPriority() {
+        WeightedPriorityQueue<String> queue = new WeightedPriorityQueue<>(10, new int[]{1, 1, 1}, value -> Priority.fromString(value));
+        queue.add("unknown");
+        assertEquals(queue.size(Priority.NORMAL), 1);
+    }
+
+}
@@ -0,0 +1,125 @@
+package pl.alyx.library.notification.service.dedup;
+
+import org.testng.annotations.Test;
+import pl.alyx.library.notification.service.config.DeduplicationConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.testng.Assert.*;
+
+public class DeduplicationFilterTest {
+
+    @Test
+    public void testDuplicates() {
+        DeduplicationFilter filter = new DeduplicationFilter(new DeduplicationConfig.Builder()
+                .expectedIds(1000)
+                .build());
+        assertFalse(filter.isDuplicate("a"));
+        assertFalse(filter.isDuplicate("b"));
+        assertTrue(filter.isDuplicate("a"));
+        assertTrue(filter.isDuplicate("b"));
+    }
+
+    @Test
+    public void testAcquireAndRelease() {
+        DeduplicationFilter filter = new DeduplicationFilter(new DeduplicationConfig.Builder()
+                .expectedIds(1000)
+                .build());
+        assertEquals(filter.acquire("a"), DeduplicationFilter.Status.NEW);
+        // in flight
+        assertEquals(filter.acquire("a"), DeduplicationFilter.Status.DUPLICATE);
+        filter.release("a", false);
+        // a failed delivery is forgotten
+        assertEquals(filter.acquire("a"), DeduplicationFilter.Status.NEW);
+        filter.release("a", true);
+        assertEquals(filter.acquire("a"), DeduplicationFilter.Status.DUPLICATE);
+    }
+
+    @Test
+    public void testCapacity() {
+        DeduplicationFilter filter = new DeduplicationFilter(new DeduplicationConfig.Builder()
+                .expectedIds(100)
+                .build());
+        for (int i = 0; i < 100; i++) {
+            assertFalse(filter.isDuplicate("a" + i));
+        }
+        // a full generation is retired early, its ids are still known from the previous one
+        assertFalse(filter.isDuplicate("b0"));
+        assertTrue(filter.isDuplicate("a0"));
+        for (int i = 1; i < 100; i++) {
+            assertFalse(filter.isDuplicate("b" + i));
+        }
+        assertFalse(filter.isDuplicate("c0"));
+        assertFalse(filter.isDuplicate("a1"));
+        assertTrue(filter.isDuplicate("b1"));
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        DeduplicationFilter filter = new DeduplicationFilter(new DeduplicationConfig.Builder()
+                .expectedIds(100_000)
+                .falsePositiveRate(0.01)
+                .build());
+        int duplicates = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.isDuplicate(UUID.randomUUID().toString())) {
+                duplicates++;
+            }
+        }
+        // Bloom filter hits are confirmed against the exact ids, so no new id is ever dropped
+        assertEquals(duplicates, 0);
+        assertEquals(filter.getSuspectedCount(), 0);
+        assertTrue(filter.getMemorySize() < 150_000, "Memory: " + filter.getMemorySize());
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException {
+        DeduplicationFilter filter = new DeduplicationFilter(new DeduplicationConfig.Builder()
+                .expectedIds(1000)
+                .window(Duration.ofMillis(100))
+                .build());
+        assertFalse(filter.isDuplicate("a"));
+        Thread.sleep(120);
+        // still known from the previous generation
+        assertTrue(filter.isDuplicate("a"));
+        assertFalse(filter.isDuplicate("b"));
+        Thread.sleep(250);
+        assertFalse(filter.isDuplicate("b"));
+    }
+
+    @Test
+    public void testPersistence() throws IOException {
+        Path directory = Files.createTempDirectory("dedup");
+        try {
+            DeduplicationConfig config = new DeduplicationConfig.Builder()
+                    .expectedIds(1000)
+                    .path(directory.resolve("ids.bin").toString())
+                    .build();
+            DeduplicationFilter filter = new DeduplicationFilter(config);
+            assertFalse(filter.isDuplicate("a"));
+            filter.close();
+
+            // ids from before the restart are only in the Bloom filter and cannot be confirmed
+            DeduplicationFilter restored = new DeduplicationFilter(config);
+            assertEquals(restored.acquire("a"), DeduplicationFilter.Status.SUSPECTED);
+            assertEquals(restored.getSuspectedCount(), 1);
+            assertFalse(restored.isDuplicate("b"));
+            assertTrue(restored.isDuplicate("b"));
+
+            // state saved with other settings is ignored
+            DeduplicationFilter resized = new DeduplicationFilter(new DeduplicationConfig.Builder()
+                    .expectedIds(2000)
+                    .path(config.getPath())
+                    .build());
+            assertFalse(resized.isDuplicate("a"));
+        } finally {
+            Files.deleteIfExists(directory.resolve("ids.bin"));
+            Files.delete(directory);
+        }
+    }
+
+}
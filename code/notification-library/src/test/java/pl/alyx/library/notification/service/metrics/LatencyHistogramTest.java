@@ -0,0 +1,48 @@
+package pl.alyx.library.notification.service.metrics;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        long[] values = {0, 1, 15, 16, 17, 31, 32, 1000, 123_456_789L, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(LatencyHistogram.lowest(index) <= value, "Value " + value);
+            assertTrue(LatencyHistogram.highest(index) >= value, "Value " + value);
+            // bucket width stays within the advertised precision
+            assertTrue(LatencyHistogram.highest(index) - LatencyHistogram.lowest(index) <= value / 16, "Value " + value);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        assertEquals(histogram.getCount(), 1000);
+        assertEquals(histogram.getMax(), TimeUnit.MILLISECONDS.toNanos(1000));
+        assertEquals(histogram.getMean(), TimeUnit.MICROSECONDS.toNanos(500_500), 1.0);
+        assertClose(histogram.getValueAtPercentile(50), TimeUnit.MILLISECONDS.toNanos(500));
+        assertClose(histogram.getValueAtPercentile(99), TimeUnit.MILLISECONDS.toNanos(990));
+        assertEquals(histogram.getValueAtPercentile(100), histogram.getMax());
+    }
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(histogram.getValueAtPercentile(99), 0L);
+        assertEquals(histogram.getMean(), 0.0);
+    }
+
+    private static void assertClose(long actual, long expected) {
+        assertTrue(Math.abs(actual - expected) <= expected / 16, "Expected " + expected + " but was " + actual);
+    }
+
+}
@@ -0,0 +1,51 @@
+package pl.alyx.library.notification.service.metrics;
+
+import org.testng.annotations.Test;
+import pl.alyx.library.notification.exception.PermanentSendException;
+import pl.alyx.library.notification.exception.RetryableSendException;
+import pl.alyx.library.notification.model.Notification;
+import pl.alyx.library.notification.sender.NotificationSender;
+import pl.alyx.library.notification.service.DefaultNotificationSenderService;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void testSenderOutcomes() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        NotificationSender sender = notification -> {
+            switch (calls.incrementAndGet() % 3) {
+                case 1:
+                    throw new RetryableSendException("Server busy");
+                case 2:
+                    throw new PermanentSendException("User unknown");
+                default:
+                    break;
+            }
+        };
+        MetricsRegistry registry = new MetricsRegistry();
+        DefaultNotificationSenderService service = new DefaultNotificationSenderService.Builder()
+                .addSender(sender)
+                .metrics(registry)
+                .build();
+        try {
+            Notification notification = new Notification.Builder().message("Hello").build();
+            for (int i = 0; i < 9; i++) {
+                service.deliver(notification);
+            }
+        } finally {
+            service.close();
+        }
+        SenderMetrics metrics = registry.getSenderMetrics(sender);
+        assertEquals(metrics.getCount(), 9);
+        assertEquals(metrics.getCount(SendOutcome.SUCCESS), 3);
+        assertEquals(metrics.getCount(SendOutcome.PERMANENT), 3);
+        assertEquals(metrics.getCount(SendOutcome.RETRYABLE), 3);
+        assertTrue(metrics.getLatency(SendOutcome.SUCCESS).getMax() >= 0);
+        assertEquals(registry.getSenders().size(), 1);
+    }
+
+}
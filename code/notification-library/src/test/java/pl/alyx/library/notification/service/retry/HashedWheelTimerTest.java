@@ -0,0 +1,70 @@
+package pl.alyx.library.notification.service.retry;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class HashedWheelTimerTest {
+
+    @Test
+    public void testSchedule() throws InterruptedException {
+        try (HashedWheelTimer timer = new HashedWheelTimer("test-timer", 5, TimeUnit.MILLISECONDS, 8)) {
+            int count = 1000;
+            CountDownLatch latch = new CountDownLatch(count);
+            for (int i = 0; i < count; i++) {
+                // delays span several rounds of the wheel
+                timer.schedule(latch::countDown, i % 200, TimeUnit.MILLISECONDS);
+            }
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(timer.getPendingCount(), 0);
+        }
+    }
+
+    @Test
+    public void testScheduleNotEarly() throws InterruptedException {
+        try (HashedWheelTimer timer = new HashedWheelTimer("test-timer", 10, TimeUnit.MILLISECONDS, 4)) {
+            long start = System.nanoTime();
+            CountDownLatch latch = new CountDownLatch(1);
+            long[] elapsed = new long[1];
+            timer.schedule(() -> {
+                elapsed[0] = System.nanoTime() - start;
+                latch.countDown();
+            }, 150, TimeUnit.MILLISECONDS);
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertTrue(elapsed[0] >= TimeUnit.MILLISECONDS.toNanos(150));
+        }
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        AtomicInteger fired = new AtomicInteger();
+        try (HashedWheelTimer timer = new HashedWheelTimer("test-timer", 5, TimeUnit.MILLISECONDS, 8)) {
+            HashedWheelTimer.Timeout timeout = timer.schedule(fired::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+            assertTrue(timeout.cancel());
+            assertFalse(timeout.cancel());
+            assertEquals(timer.getPendingCount(), 0);
+            Thread.sleep(150);
+            assertEquals(fired.get(), 0);
+            assertTrue(timeout.isCancelled());
+        }
+    }
+
+    @Test
+    public void testStop() {
+        HashedWheelTimer timer = new HashedWheelTimer("test-timer", 5, TimeUnit.MILLISECONDS, 8);
+        timer.schedule(() -> {
+        }, 1, TimeUnit.HOURS);
+        timer.schedule(() -> {
+        }, 2, TimeUnit.HOURS);
+        List<HashedWheelTimer.Timeout> unprocessed = timer.stop();
+        assertEquals(unprocessed.size(), 2);
+        assertThrows(IllegalStateException.class, () -> timer.schedule(() -> {
+        }, 1, TimeUnit.SECONDS));
+    }
+
+}
@@ -0,0 +1,205 @@
+package pl.alyx.library.notification.service.retry;
+
+import org.testng.annotations.Test;
+import pl.alyx.library.notification.exception.PartialSendException;
+import pl.alyx.library.notification.exception.PermanentSendException;
+import pl.alyx.library.notification.exception.RetryableSendException;
+import pl.alyx.library.notification.exception.SendException;
+import pl.alyx.library.notification.model.Notification;
+import pl.alyx.library.notification.sender.NotificationSender;
+import pl.alyx.library.notification.service.config.RetryConfig;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class RetrySchedulerTest {
+
+    private static RetryConfig.Builder config() {
+        return new RetryConfig.Builder()
+                .initialDelay(Duration.ofMillis(10))
+                .maxDelay(Duration.ofMillis(40))
+                .tickDuration(Duration.ofMillis(5));
+    }
+
+    @Test
+    public void testComputeDelay() {
+        RetryScheduler scheduler = new RetryScheduler(new RetryConfig.Builder()
+                .initialDelay(Duration.ofSeconds(1))
+                .maxDelay(Duration.ofSeconds(10))
+                .jitter(0.0)
+                .build(), null);
+        try {
+            assertEquals(scheduler.computeDelay(1), TimeUnit.SECONDS.toNanos(1));
+            assertEquals(scheduler.computeDelay(2), TimeUnit.SECONDS.toNanos(2));
+            assertEquals(scheduler.computeDelay(4), TimeUnit.SECONDS.toNanos(8));
+            assertEquals(scheduler.computeDelay(5), TimeUnit.SECONDS.toNanos(10));
+        } finally {
+            scheduler.close();
+        }
+    }
+
+    @Test
+    public void testRetryUntilSuccess() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        NotificationSender sender = notification -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new RetryableSendException("Server busy");
+            }
+        };
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger attempts = new AtomicInteger();
+        RetryScheduler scheduler = new RetryScheduler(config().maxAttempts(5).build(), new RetryListener() {
+            @Override
+            public void onSuccess(NotificationSender sender, Notification notification, int count) {
+                attempts.set(count);
+                latch.countDown();
+            }
+        });
+        try {
+            Notification notification = new Notification.Builder().message("Hello").build();
+            assertTrue(scheduler.schedule(sender, notification, new RetryableSendException("Server busy")));
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            // the original attempt failed before the notification was scheduled
+            assertEquals(attempts.get(), 4);
+            assertEquals(calls.get(), 3);
+        } finally {
+            scheduler.close();
+        }
+    }
+
+    @Test
+    public void testGiveUp() throws InterruptedException {
+        NotificationSender sender = notification -> {
+            throw new RetryableSendException("Server busy");
+        };
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger attempts = new AtomicInteger();
+        RetryScheduler scheduler = new RetryScheduler(config().maxAttempts(3).build(), new RetryListener() {
+            @Override
+            public void onFailure(NotificationSender sender, Notification notification, int count, SendException exception) {
+                attempts.set(count);
+                latch.countDown();
+            }
+        });
+        try {
+            Notification notification = new Notification.Builder().message("Hello").build();
+            assertFalse(scheduler.schedule(sender, notification, new PermanentSendException("Invalid address")));
+            assertTrue(scheduler.schedule(sender, notification, new RetryableSendException("Server busy")));
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(attempts.get(), 3);
+        } finally {
+            scheduler.close();
+        }
+    }
+
+    @Test
+    public void testPartialRetry() throws InterruptedException {
+        List<Collection<String>> calls = new CopyOnWriteArrayList<>();
+        NotificationSender sender = new NotificationSender() {
+            @Override
+            public void send(Notification notification) {
+                fail("Retry should be restricted to unsent recipients");
+            }
+
+            @Override
+            public void send(Notification notification, Collection<String> recipients) throws PartialSendException {
+                calls.add(new ArrayList<>(recipients));
+                if (calls.size() == 1) {
+                    throw new PartialSendException("Mailbox busy", null,
+                            Arrays.asList("b@localhost"), Arrays.asList("c@localhost"), null);
+                }
+            }
+        };
+        CountDownLatch latch = new CountDownLatch(1);
+        RetryScheduler scheduler = new RetryScheduler(config().maxAttempts(5).build(), new RetryListener() {
+            @Override
+            public void onSuccess(NotificationSender sender, Notification notification, int count) {
+                latch.countDown();
+            }
+        });
+        try {
+            Notification notification = new Notification.Builder().message("Hello").build();
+            assertFalse(scheduler.schedule(sender, notification, new PartialSendException("Rejected", null,
+                    Arrays.asList("a@localhost"), null, Arrays.asList("x@localhost"))));
+            assertTrue(scheduler.schedule(sender, notification, new PartialSendException("Mailbox busy", null,
+                    Arrays.asList("a@localhost"), Arrays.asList("b@localhost", "c@localhost"), Arrays.asList("x@localhost"))));
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(calls, Arrays.asList(
+                    Arrays.asList("b@localhost", "c@localhost"),
+                    Arrays.asList("c@localhost")));
+        } finally {
+            scheduler.close();
+        }
+    }
+
+    @Test
+    public void testCloseCancelsPendingRetries() {
+        NotificationSender sender = notification -> {
+            throw new RetryableSendException("Server busy");
+        };
+        List<Integer> cancelled = new CopyOnWriteArrayList<>();
+        AtomicInteger failures = new AtomicInteger();
+        RetryScheduler scheduler = new RetryScheduler(config().initialDelay(Duration.ofSeconds(10)).maxDelay(Duration.ofSeconds(10)).build(), new RetryListener() {
+            @Override
+            public void onFailure(NotificationSender sender, Notification notification, int count, SendException exception) {
+                failures.incrementAndGet();
+            }
+
+            @Override
+            public void onCancel(NotificationSender sender, Notification notification, int count) {
+                cancelled.add(count);
+            }
+        });
+        Notification notification = new Notification.Builder().message("Hello").build();
+        assertTrue(scheduler.schedule(sender, notification, new RetryableSendException("Server busy")));
+        scheduler.close();
+        assertEquals(cancelled, Arrays.asList(1));
+        assertEquals(failures.get(), 0);
+        assertTrue(scheduler.isClosed());
+        assertFalse(scheduler.schedule(sender, notification, new RetryableSendException("Server busy")));
+    }
+
+    @Test
+    public void testCloseWaitsForRunningAttempt() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        NotificationSender sender = notification -> {
+            started.countDown();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new RetryableSendException("Server busy");
+        };
+        AtomicInteger cancelled = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        RetryScheduler scheduler = new RetryScheduler(config().maxAttempts(5).build(), new RetryListener() {
+            @Override
+            public void onFailure(NotificationSender sender, Notification notification, int count, SendException exception) {
+                failures.incrementAndGet();
+            }
+
+            @Override
+            public void onCancel(NotificationSender sender, Notification notification, int count) {
+                cancelled.incrementAndGet();
+            }
+        });
+        Notification notification = new Notification.Builder().message("Hello").build();
+        assertTrue(scheduler.schedule(sender, notification, new RetryableSendException("Server busy")));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        scheduler.close();
+        // the running attempt failed after close and could not be rescheduled
+        assertEquals(cancelled.get(), 1);
+        assertEquals(failures.get(), 0);
+    }
+
+}
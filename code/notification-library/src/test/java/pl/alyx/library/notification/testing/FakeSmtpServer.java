@@ -0,0 +1,456 @@
+package pl.alyx.library.notification.testing;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+public class FakeSmtpServer implements AutoCloseable {
+
+    public enum Fault {
+        NONE,
+        TEMPORARY,
+        PERMANENT,
+        DROP,
+        // the recipient is accepted, the message is refused after DATA
+        OVERSIZED
+    }
+
+    private final ServerSocket socket;
+    private final ExecutorService executor;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final Queue<Message> messages = new ConcurrentLinkedQueue<>();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicInteger pipelinedCount = new AtomicInteger();
+    private final long latency;
+    private final int readRate;
+    private final boolean store;
+    private final Function<String, Fault> faults;
+    private final double temporaryRate;
+    private final double permanentRate;
+    private final double dropRate;
+    private final boolean pipelining;
+    private final boolean startTls;
+    private volatile boolean running = true;
+
+    private FakeSmtpServer(Builder builder) throws IOException {
+        this.latency = builder.latency;
+        this.readRate = builder.readRate;
+        this.store = builder.store;
+        this.faults = builder.faults;
+        this.temporaryRate = builder.temporaryRate;
+        this.permanentRate = builder.permanentRate;
+        this.dropRate = builder.dropRate;
+        this.pipelining = builder.pipelining;
+        this.startTls = builder.startTls;
+        this.socket = new ServerSocket(builder.port, 1024, InetAddress.getLoopbackAddress());
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fake-smtp-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.execute(this::accept);
+    }
+
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    public List<Message> getMessages() {
+        return new ArrayList<>(messages);
+    }
+
+    public long getReceivedCount() {
+        return received.get();
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    public int getPipelinedCount() {
+        return pipelinedCount.get();
+    }
+
+    public void dropConnections() {
+        for (Socket connection : connections) {
+            closeQuietly(connection);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+        for (Socket connection : connections) {
+            closeQuietly(connection);
+        }
+        executor.shutdownNow();
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket connection = socket.accept();
+                connections.add(connection);
+                connectionCount.incrementAndGet();
+                executor.execute(() -> serve(connection));
+            } catch (IOException e) {
+                if (running) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket connection) {
+        try {
+            InputStream in = new BufferedInputStream(readRate > 0
+                    ? new ThrottledInputStream(connection.getInputStream(), readRate)
+                    : connection.getInputStream());
+            OutputStream out = connection.getOutputStream();
+            reply(out, "220 localhost ESMTP fake");
+            String from = null;
+            List<String> recipients = new ArrayList<>();
+            boolean oversized = false;
+            String line;
+            while ((line = readLine(in)) != null) {
+                if (in.available() > 0) {
+                    // the client sent the next command without waiting for this reply
+                    pipelinedCount.incrementAndGet();
+                }
+                String command = line.length() < 4 ? line.toUpperCase() : line.substring(0, 4).toUpperCase();
+                switch (command) {
+                    case "EHLO":
+                        reply(out, "250-localhost\r\n250-8BITMIME\r\n"
+                                + (pipelining ? "250-PIPELINING\r\n" : "")
+                                + (startTls ? "250-STARTTLS\r\n" : "")
+                                + "250-AUTH PLAIN LOGIN\r\n250 SIZE 0");
+                        break;
+                    case "STAR":
+                        // advertised but never negotiated, there is no certificate to offer
+                        reply(out, startTls ? "454 4.7.0 TLS not available due to temporary reason" : "502 5.5.2 Command not recognized");
+                        break;
+                    case "HELO":
+                        reply(out, "250 localhost");
+                        break;
+                    case "AUTH":
+                        reply(out, "235 2.7.0 Authentication successful");
+                        break;
+                    case "MAIL":
+                        from = address(line);
+                        recipients.clear();
+                        oversized = false;
+                        reply(out, "250 2.1.0 OK");
+                        break;
+                    case "RCPT":
+                        String recipient = address(line);
+                        Fault fault = fault(recipient);
+                        if (fault == Fault.DROP) {
+                            return;
+                        } else if (fault == Fault.TEMPORARY) {
+                            reply(out, "451 4.3.0 Temporary failure, try again later");
+                        } else if (fault == Fault.PERMANENT) {
+                            reply(out, "550 5.1.1 User unknown");
+                        } else {
+                            oversized |= fault == Fault.OVERSIZED;
+                            recipients.add(recipient);
+                            reply(out, "250 2.1.5 OK");
+                        }
+                        break;
+                    case "DATA":
+                        if (from == null || recipients.isEmpty()) {
+                            reply(out, "554 5.5.1 No valid recipients");
+                            break;
+                        }
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        byte[] data = readData(in);
+                        if (data == null) {
+                            return;
+                        }
+                        if (oversized) {
+                            from = null;
+                            recipients = new ArrayList<>();
+                            oversized = false;
+                            reply(out, "552 5.3.4 Message too large");
+                            break;
+                        }
+                        received.incrementAndGet();
+                        if (store) {
+                            messages.add(new Message(from, recipients, data));
+                        }
+                        from = null;
+                        recipients = new ArrayList<>();
+                        reply(out, "250 2.0.0 OK queued");
+                        break;
+                    case "RSET":
+                        from = null;
+                        recipients.clear();
+                        oversized = false;
+                        reply(out, "250 2.0.0 OK");
+                        break;
+                    case "NOOP":
+                        reply(out, "250 2.0.0 OK");
+                        break;
+                    case "QUIT":
+                        reply(out, "221 2.0.0 Bye");
+                        return;
+                    default:
+                        reply(out, "502 5.5.2 Command not recognized");
+                        break;
+                }
+            }
+        } catch (IOException ignored) {
+            // the client went away
+        } finally {
+            connections.remove(connection);
+            closeQuietly(connection);
+        }
+    }
+
+    private Fault fault(String recipient) {
+        Fault fault = faults.apply(recipient);
+        if (fault != Fault.NONE) {
+            return fault;
+        }
+        double random = ThreadLocalRandom.current().nextDouble();
+        if (random < dropRate) {
+            return Fault.DROP;
+        }
+        if (random < dropRate + temporaryRate) {
+            return Fault.TEMPORARY;
+        }
+        if (random < dropRate + temporaryRate + permanentRate) {
+            return Fault.PERMANENT;
+        }
+        return Fault.NONE;
+    }
+
+    private void reply(OutputStream out, String reply) throws IOException {
+        if (latency > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            }
+        }
+        out.write((reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    public static Fault faultFor(String recipient) {
+        String local = recipient.toLowerCase();
+        if (local.startsWith("tempfail")) {
+            return Fault.TEMPORARY;
+        }
+        if (local.startsWith("permfail")) {
+            return Fault.PERMANENT;
+        }
+        if (local.startsWith("drop")) {
+            return Fault.DROP;
+        }
+        if (local.startsWith("toolarge")) {
+            return Fault.OVERSIZED;
+        }
+        return Fault.NONE;
+    }
+
+    private static String address(String line) {
+        int start = line.indexOf('<');
+        int end = line.indexOf('>', start + 1);
+        return start < 0 || end < 0 ? line.substring(line.indexOf(':') + 1).trim() : line.substring(start + 1, end);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (c == '\n') {
+                byte[] bytes = line.toByteArray();
+                int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+            }
+            line.write(c);
+        }
+        return null;
+    }
+
+    private static byte[] readData(InputStream in) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        String line;
+        while ((line = readLine(in)) != null) {
+            if (line.equals(".")) {
+                return data.toByteArray();
+            }
+            if (line.startsWith(".")) {
+                line = line.substring(1);
+            }
+            data.write(line.getBytes(StandardCharsets.ISO_8859_1));
+            data.write('\r');
+            data.write('\n');
+        }
+        return null;
+    }
+
+    private static void closeQuietly(Socket connection) {
+        try {
+            connection.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    public static final class Message {
+
+        private final String from;
+        private final List<String> recipients;
+        private final byte[] data;
+
+        private Message(String from, List<String> recipients, byte[] data) {
+            this.from = from;
+            this.recipients = Collections.unmodifiableList(new ArrayList<>(recipients));
+            this.data = data;
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public List<String> getRecipients() {
+            return recipients;
+        }
+
+        public String getContent() {
+            return new String(data, StandardCharsets.ISO_8859_1);
+        }
+
+    }
+
+    private static final class ThrottledInputStream extends FilterInputStream {
+
+        private final int rate;
+
+        private ThrottledInputStream(InputStream in, int rate) {
+            super(in);
+            this.rate = rate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            // reads at most a tenth of a second's worth at a time, then sleeps for it
+            int count = super.read(buffer, offset, Math.max(1, Math.min(length, rate / 10)));
+            if (count > 0) {
+                try {
+                    TimeUnit.MICROSECONDS.sleep(count * 1_000_000L / rate);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted", e);
+                }
+            }
+            return count;
+        }
+
+    }
+
+    public static class Builder {
+
+        private int port;
+        private long latency;
+        private int readRate;
+        private boolean store = true;
+        private Function<String, Fault> faults = FakeSmtpServer::faultFor;
+        private double temporaryRate;
+        private double permanentRate;
+        private double dropRate;
+        private boolean pipelining;
+        private boolean startTls;
+
+        public FakeSmtpServer start() throws IOException {
+            return new FakeSmtpServer(this);
+        }
+
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder latency(long latency, TimeUnit unit) {
+            this.latency = unit.toMillis(latency);
+            return this;
+        }
+
+        public Builder readRate(int bytesPerSecond) {
+            this.readRate = bytesPerSecond;
+            return this;
+        }
+
+        public Builder store(boolean store) {
+            this.store = store;
+            return this;
+        }
+
+        public Builder faults(Function<String, Fault> faults) {
+            this.faults = faults;
+            return this;
+        }
+
+        public Builder temporaryRate(double temporaryRate) {
+            this.temporaryRate = temporaryRate;
+            return this;
+        }
+
+        public Builder permanentRate(double permanentRate) {
+            this.permanentRate = permanentRate;
+            return this;
+        }
+
+        public Builder dropRate(double dropRate) {
+            this.dropRate = dropRate;
+            return this;
+        }
+
+        public Builder pipelining(boolean pipelining) {
+            this.pipelining = pipelining;
+            return this;
+        }
+
+        public Builder startTls(boolean startTls) {
+            this.startTls = startTls;
+            return this;
+        }
+
+    }
+
+}
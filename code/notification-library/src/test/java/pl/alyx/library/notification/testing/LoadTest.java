@@ -0,0 +1,142 @@
+package pl.alyx.library.notification.testing;
+
+import pl.alyx.library.notification.model.Notification;
+import pl.alyx.library.notification.sender.NotificationSender;
+import pl.alyx.library.notification.sender.config.EmailSenderConfig;
+import pl.alyx.library.notification.sender.config.MailServerConfig;
+import pl.alyx.library.notification.sender.config.MailServerSecurity;
+import pl.alyx.library.notification.sender.impl.EmailSender;
+import pl.alyx.library.notification.sender.impl.NioEmailSender;
+import pl.alyx.library.notification.service.DefaultNotificationSenderService;
+import pl.alyx.library.notification.service.DeliveryResult;
+import pl.alyx.library.notification.service.metrics.LatencyHistogram;
+import pl.alyx.library.notification.service.metrics.SendOutcome;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// arguments are key=value pairs, for example: count=20000 threads=32 latency=5 temporary=0.02 sender=nio
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            options.put(arg.substring(0, index), arg.substring(index + 1));
+        }
+        int count = Integer.parseInt(options.getOrDefault("count", "10000"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "16"));
+        long latency = Long.parseLong(options.getOrDefault("latency", "0"));
+        int readRate = Integer.parseInt(options.getOrDefault("readRate", "0"));
+        int connections = Integer.parseInt(options.getOrDefault("connections", "8"));
+        double temporary = Double.parseDouble(options.getOrDefault("temporary", "0.01"));
+        double permanent = Double.parseDouble(options.getOrDefault("permanent", "0.01"));
+        double drop = Double.parseDouble(options.getOrDefault("drop", "0.001"));
+        String type = options.getOrDefault("sender", "email");
+
+        try (FakeSmtpServer server = new FakeSmtpServer.Builder()
+                .latency(latency, TimeUnit.MILLISECONDS)
+                .readRate(readRate)
+                .store(false)
+                .start()) {
+            EmailSenderConfig config = new EmailSenderConfig.Builder()
+                    .server(new MailServerConfig.Builder()
+                            .host("127.0.0.1")
+                            .port(server.getPort())
+                            .security(MailServerSecurity.NONE)
+                            .maxConnections(connections)
+                            .timeout(10)
+                            .build())
+                    .fromMail("load@example.com")
+                    .build();
+            NotificationSender sender = "nio".equals(type) ? new NioEmailSender(config) : new EmailSender(config);
+            DefaultNotificationSenderService service = new DefaultNotificationSenderService.Builder()
+                    .addSender(sender)
+                    .build();
+
+            Notification[] notifications = new Notification[count];
+            SendOutcome[] expected = new SendOutcome[count];
+            for (int i = 0; i < count; i++) {
+                double random = (double) (i * 7919L % count) / count;
+                String prefix;
+                if (random < drop) {
+                    prefix = "drop";
+                    expected[i] = SendOutcome.RETRYABLE;
+                } else if (random < drop + temporary) {
+                    prefix = "tempfail";
+                    expected[i] = SendOutcome.RETRYABLE;
+                } else if (random < drop + temporary + permanent) {
+                    prefix = "permfail";
+                    expected[i] = SendOutcome.PERMANENT;
+                } else {
+                    prefix = "user";
+                    expected[i] = SendOutcome.SUCCESS;
+                }
+                notifications[i] = new Notification.Builder()
+                        .id(Integer.toString(i))
+                        .recipient(prefix + i + "@example.com")
+                        .subject("Load test " + i)
+                        .message("Message number " + i)
+                        .build();
+            }
+
+            LatencyHistogram histogram = new LatencyHistogram();
+            int outcomes = SendOutcome.values().length;
+            // expected outcome by actual outcome
+            AtomicLongArray matrix = new AtomicLongArray(outcomes * outcomes);
+            AtomicInteger next = new AtomicInteger();
+            CountDownLatch done = new CountDownLatch(threads);
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        int i;
+                        while ((i = next.getAndIncrement()) < count) {
+                            long sent = System.nanoTime();
+                            DeliveryResult result = service.deliver(notifications[i]);
+                            histogram.record(System.nanoTime() - sent);
+                            SendOutcome actual = result.isSuccess() ? SendOutcome.SUCCESS
+                                    : SendOutcome.of(result.getException());
+                            matrix.incrementAndGet(expected[i].ordinal() * outcomes + actual.ordinal());
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }, "load-" + t);
+                thread.start();
+            }
+            done.await();
+            long elapsed = System.nanoTime() - start;
+            service.close();
+
+            long correct = 0;
+            for (SendOutcome outcome : SendOutcome.values()) {
+                correct += matrix.get(outcome.ordinal() * outcomes + outcome.ordinal());
+            }
+            System.out.printf("sender=%s count=%d threads=%d connections=%d latency=%dms%n", type, count, threads, connections, latency);
+            System.out.printf("throughput: %.0f messages/s in %.2f s, %d SMTP connections opened%n",
+                    count / (elapsed / 1e9), elapsed / 1e9, server.getConnectionCount());
+            System.out.printf("latency: p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms%n",
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMax()));
+            System.out.printf("classification: %.2f%% correct%n", 100.0 * correct / count);
+            for (SendOutcome outcome : SendOutcome.values()) {
+                StringBuilder row = new StringBuilder(String.format("  expected %-9s", outcome));
+                for (SendOutcome actual : SendOutcome.values()) {
+                    row.append(String.format(" %s=%d", actual, matrix.get(outcome.ordinal() * outcomes + actual.ordinal())));
+                }
+                System.out.println(row);
+            }
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+}
@@ -23,6 +23,26 @@ public class HtmlUtilsTest {
 
     @Test
     public void testMakeText() {
+        assertEquals(HtmlUtils.makeText(null), "");
+        assertEquals(HtmlUtils.makeText("Hello, World."), "Hello, World.");
+        assertEquals(HtmlUtils.makeText("a < b && c > d\nnext line"), "a < b && c > d\nnext line");
+        assertEquals(HtmlUtils.makeText("<p>Hello, <b>World</b>.</p>"), "Hello, World.");
+        assertEquals(HtmlUtils.makeText("Fish &amp; chips"), "Fish & chips");
+    }
+
+    @Test
+    public void testHasMarkup() {
+        assertFalse(HtmlUtils.hasMarkup(null));
+        assertFalse(HtmlUtils.hasMarkup(""));
+        assertFalse(HtmlUtils.hasMarkup("Hello, World."));
+        assertFalse(HtmlUtils.hasMarkup("1 < 2 & 3 > 2"));
+        assertFalse(HtmlUtils.hasMarkup("trailing <"));
+        assertTrue(HtmlUtils.hasMarkup("<b>bold</b>"));
+        assertTrue(HtmlUtils.hasMarkup("line<br>break"));
+        assertTrue(HtmlUtils.hasMarkup("text</p>"));
+        assertTrue(HtmlUtils.hasMarkup("<!-- comment -->"));
+        assertTrue(HtmlUtils.hasMarkup("&nbsp;"));
+        assertTrue(HtmlUtils.hasMarkup("&#169;"));
     }
 
 }
\ No newline at end of file